@@ -0,0 +1,92 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import co.featbit.server.FBConfig;
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.ImmutableContext;
+import dev.openfeature.sdk.Value;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the attribute projection on wide contexts: most of their attributes are not referenced by any flag.
+ * Run with {@code -prof gc} to compare the allocation per evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class AttributeProjectionBenchmark {
+
+    @Param({"10", "60"})
+    public int attributes;
+
+    @Param({"false", "true"})
+    public boolean projection;
+
+    private final Converter.EvaluationContextConverter evaluationContextConverter = Converter.EvaluationContextConverter.INSTANCE;
+
+    private FBProvider provider;
+    private EvaluationContext context;
+    private Set<String> properties;
+
+    @Setup
+    public void setUp() throws IOException {
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        provider = new FBProvider("env-secret", config, new FBProviderOptions.Builder().attributeProjection(projection).build());
+        String json = BenchmarkData.readResource("fbclient_test_data.json");
+        provider.getClient().initializeFromExternalJson(json);
+        properties = projection ? ReferencedProperties.of(FlagDataSet.parse(json)) : null;
+        context = wideContext(attributes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.shutdown();
+    }
+
+    @Benchmark
+    public FBUser toFBUser() {
+        return evaluationContextConverter.toFBUser(context, properties);
+    }
+
+    @Benchmark
+    public String evaluation() {
+        return provider.getStringEvaluation("ff-test-seg", "error", context).getValue();
+    }
+
+    // a few referenced attributes, then headers, device info and tenant data that no rule looks at
+    private static EvaluationContext wideContext(int size) {
+        Map<String, Value> attributes = new HashMap<>();
+        attributes.put("name", new Value("test-user-3"));
+        attributes.put("country", new Value("cn"));
+        attributes.put("major", new Value("cs"));
+        for (int i = attributes.size(); i < size; i++) {
+            attributes.put("unreferenced-" + i, new Value("value-" + i));
+        }
+        return new ImmutableContext("test-user-3", attributes);
+    }
+
+    @Threads(1)
+    public static class OneThread extends AttributeProjectionBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends AttributeProjectionBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends AttributeProjectionBenchmark {
+    }
+
+}
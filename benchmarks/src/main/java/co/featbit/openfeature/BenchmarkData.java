@@ -0,0 +1,52 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.ImmutableContext;
+import dev.openfeature.sdk.Value;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+abstract class BenchmarkData {
+
+    static final EvaluationContext USER_1 = new ImmutableContext("test-user-1", new HashMap<String, Value>() {{
+        put("name", new Value("test-user-1"));
+        put("country", new Value("us"));
+    }});
+    static final EvaluationContext USER_3 = new ImmutableContext("test-user-3", new HashMap<String, Value>() {{
+        put("name", new Value("test-user-3"));
+        put("country", new Value("cn"));
+        put("major", new Value("cs"));
+    }});
+    static final EvaluationContext USER_4 = new ImmutableContext("test-user-4", new HashMap<String, Value>() {{
+        put("name", new Value("test-user-4"));
+        put("country", new Value("uk"));
+        put("major", new Value("physics"));
+    }});
+    static final EvaluationContext PHONE_NUMBER = new ImmutableContext("18555358000", new HashMap<String, Value>() {{
+        put("name", new Value("test-user-5"));
+    }});
+
+    private BenchmarkData() {
+    }
+
+    // same set-up as BaseTest#initClientInOfflineMode
+    static FBProvider initProviderInOfflineMode() throws IOException {
+        FBConfig config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url")
+                .build();
+        FBProvider provider = new FBProvider("env-secret", config);
+        provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+        return provider;
+    }
+
+    static String readResource(final String fileName) throws IOException {
+        return Resources.toString(Resources.getResource(fileName), Charsets.UTF_8);
+    }
+
+}
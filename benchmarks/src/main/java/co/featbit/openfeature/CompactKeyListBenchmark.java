@@ -0,0 +1,111 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.ImmutableContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the membership tests of a large segment in the default storage of the SDK, a list of strings, and in
+ * a {@link CompactDataStorageFactory}, both for the list on its own and for a flag evaluation.
+ * See {@link KeyListFootprint} for the memory side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class CompactKeyListBenchmark {
+
+    @Param({"1000", "100000", "500000"})
+    public int size;
+
+    @Param({"default", "compact", "compact-bloom", "compact-offheap"})
+    public String store;
+
+    private FBProvider provider;
+    private List<String> keys;
+    private String member;
+    private EvaluationContext memberContext;
+
+    @Setup
+    public void setUp() throws IOException {
+        FlagDataSet data = FlagDataSet.parse(BenchmarkData.readResource("fbclient_test_data.json"));
+        JsonObject segment = data.getSegments().values().iterator().next().deepCopy();
+        JsonArray included = segment.getAsJsonArray("included");
+        List<String> segmentUsers = segmentUsers(size);
+        segmentUsers.forEach(included::add);
+        member = segmentUsers.get(size / 2);
+        memberContext = new ImmutableContext(member);
+
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        if (store.equals("default")) {
+            keys = segmentUsers;
+        } else {
+            boolean bloomFilter = !store.equals("compact");
+            boolean offHeap = store.equals("compact-offheap");
+            config.dataStorageFactory(new CompactDataStorageFactory.Builder().bloomFilter(bloomFilter).offHeap(offHeap).build());
+            keys = CompactKeyList.of(segmentUsers, offHeap, bloomFilter);
+        }
+        provider = new FBProvider("env-secret", config.build());
+        provider.getClient().initializeFromExternalJson(data.withSegment(segment).toDataSyncJson());
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.shutdown();
+    }
+
+    @Benchmark
+    public boolean containsMember() {
+        return keys.contains(member);
+    }
+
+    @Benchmark
+    public boolean containsNonMember() {
+        return keys.contains("test-user-4");
+    }
+
+    @Benchmark
+    public String evaluateMember() {
+        return provider.getStringEvaluation("ff-test-seg", "error", memberContext).getValue();
+    }
+
+    // neither included nor excluded, then the segment rule is evaluated
+    @Benchmark
+    public String evaluateNonMember() {
+        return provider.getStringEvaluation("ff-test-seg", "error", BenchmarkData.USER_4).getValue();
+    }
+
+    static List<String> segmentUsers(int size) {
+        List<String> res = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            res.add("segment-user-" + i + "-" + Integer.toHexString(i * 0x9E3779B9));
+        }
+        return res;
+    }
+
+    @Threads(1)
+    public static class OneThread extends CompactKeyListBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends CompactKeyListBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends CompactKeyListBenchmark {
+    }
+
+}
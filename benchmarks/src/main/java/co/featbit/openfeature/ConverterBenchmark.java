@@ -0,0 +1,66 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import com.google.gson.Gson;
+import dev.openfeature.sdk.Value;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the context and value conversions of {@link Converter} on their own, without any flag evaluation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ConverterBenchmark {
+
+    private static final String JSON_VARIATION = "{\"code\": 200, \"reason\": \"you win 100 euros\", " +
+            "\"ratio\": 0.25, \"enabled\": true, \"tags\": [\"a\", \"b\", \"c\"], \"nested\": {\"level\": 2, \"items\": [1, 2, 3]}}";
+
+    private final Converter.EvaluationContextConverter evaluationContextConverter = Converter.EvaluationContextConverter.INSTANCE;
+    private final Converter.ValueConverter valueConverter = Converter.ValueConverter.INSTANCE;
+
+    private Map<?, ?> structure;
+    private List<?> list;
+
+    @Setup
+    public void setUp() {
+        structure = new Gson().fromJson(JSON_VARIATION, Map.class);
+        list = Arrays.asList("a", 1, 2.5D, true, structure);
+    }
+
+    @Benchmark
+    public FBUser toFBUser() {
+        return evaluationContextConverter.toFBUser(BenchmarkData.USER_3);
+    }
+
+    @Benchmark
+    public Value structureToValue() {
+        return valueConverter.toValue(structure);
+    }
+
+    @Benchmark
+    public Value listToValue() {
+        return valueConverter.toValue(list);
+    }
+
+    @Threads(1)
+    public static class OneThread extends ConverterBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends ConverterBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends ConverterBenchmark {
+    }
+
+}
@@ -0,0 +1,73 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import dev.openfeature.sdk.Client;
+import dev.openfeature.sdk.OpenFeatureAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the evaluation metrics hook: the same evaluation through an OpenFeature client
+ * with and without the hook.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class EvaluationMetricsBenchmark {
+
+    private FBProvider plainProvider;
+    private FBProvider metricsProvider;
+    private Client plainClient;
+    private Client metricsClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        plainProvider = initProvider(new FBProviderOptions.Builder().build());
+        metricsProvider = initProvider(new FBProviderOptions.Builder().evaluationMetrics(true).build());
+        OpenFeatureAPI.getInstance().setProviderAndWait("plain", plainProvider);
+        OpenFeatureAPI.getInstance().setProviderAndWait("metrics", metricsProvider);
+        plainClient = OpenFeatureAPI.getInstance().getClient("plain");
+        metricsClient = OpenFeatureAPI.getInstance().getClient("metrics");
+    }
+
+    @TearDown
+    public void tearDown() {
+        plainProvider.shutdown();
+        metricsProvider.shutdown();
+    }
+
+    @Benchmark
+    public boolean withoutMetrics() {
+        return plainClient.getBooleanValue("ff-test-bool", false, BenchmarkData.USER_4);
+    }
+
+    @Benchmark
+    public boolean withMetrics() {
+        return metricsClient.getBooleanValue("ff-test-bool", false, BenchmarkData.USER_4);
+    }
+
+    private static FBProvider initProvider(FBProviderOptions options) throws IOException {
+        FBConfig config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url")
+                .build();
+        FBProvider provider = new FBProvider("env-secret", config, options);
+        provider.getClient().initializeFromExternalJson(BenchmarkData.readResource("fbclient_test_data.json"));
+        return provider;
+    }
+
+    @Threads(1)
+    public static class OneThread extends EvaluationMetricsBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends EvaluationMetricsBenchmark {
+    }
+
+}
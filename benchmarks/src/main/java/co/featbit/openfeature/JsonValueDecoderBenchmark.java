@@ -0,0 +1,62 @@
+package co.featbit.openfeature;
+
+import com.google.gson.Gson;
+import dev.openfeature.sdk.Value;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link Converter.JsonValueDecoder} with the former conversion of a json variation:
+ * deserializing it into a {@code Map} and then converting the map with {@link Converter.ValueConverter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class JsonValueDecoderBenchmark {
+
+    private final Gson gson = new Gson();
+    private final Converter.ValueConverter valueConverter = Converter.ValueConverter.INSTANCE;
+    private final Converter.JsonValueDecoder jsonValueDecoder = Converter.JsonValueDecoder.INSTANCE;
+
+    @Param({"small", "large"})
+    public String size;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        if ("small".equals(size)) {
+            json = "{\"code\": 200, \"reason\": \"you win 100 euros\"}";
+        } else {
+            StringBuilder sb = new StringBuilder("{\"items\": [");
+            for (int i = 0; i < 500; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"id\": ").append(i)
+                        .append(", \"name\": \"item-").append(i)
+                        .append("\", \"price\": ").append(i * 1.25D)
+                        .append(", \"enabled\": ").append(i % 2 == 0)
+                        .append(", \"tags\": [\"a\", \"b\", \"c\"]}");
+            }
+            json = sb.append("]}").toString();
+        }
+    }
+
+    @Benchmark
+    public Value mapThenConvert() {
+        return valueConverter.toValue(gson.fromJson(json, Map.class));
+    }
+
+    @Benchmark
+    public Value streamingDecode() {
+        return jsonValueDecoder.decode(json);
+    }
+
+}
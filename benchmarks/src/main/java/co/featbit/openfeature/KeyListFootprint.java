@@ -0,0 +1,54 @@
+package co.featbit.openfeature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Measures the heap retained by a large user key list, as stored by the SDK and as a {@link CompactKeyList}.
+ * The heap is measured around the allocation after full collections, so run it with a fixed heap and nothing else;
+ * the off-heap key bytes are not counted:
+ * <pre>
+ * java -Xms2g -Xmx2g -cp benchmarks/target/benchmarks.jar co.featbit.openfeature.KeyListFootprint [sizes]
+ * java -Xms2g -Xmx2g -cp benchmarks/target/benchmarks.jar co.featbit.openfeature.KeyListFootprint 100000,500000
+ * </pre>
+ */
+public final class KeyListFootprint {
+
+    private KeyListFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "100000,500000").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        System.out.printf("%9s %16s %14s %12s%n", "keys", "store", "heap bytes", "bytes/key");
+        for (int size : sizes) {
+            measure(size, "default", ArrayList::new);
+            measure(size, "compact", keys -> CompactKeyList.of(keys, false, false));
+            measure(size, "compact-bloom", keys -> CompactKeyList.of(keys, false, true));
+            measure(size, "compact-offheap", keys -> CompactKeyList.of(keys, true, true));
+        }
+    }
+
+    private static void measure(int size, String store, Function<List<String>, List<String>> factory) {
+        long before = usedHeap();
+        List<String> list = factory.apply(CompactKeyListBenchmark.segmentUsers(size));
+        long after = usedHeap();
+        System.out.printf("%9d %16s %14d %12.1f%n", size, store, after - before, (after - before) / (double) size);
+        // keep the list reachable until the measure
+        if (list.size() != size) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
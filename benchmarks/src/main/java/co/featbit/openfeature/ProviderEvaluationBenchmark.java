@@ -0,0 +1,108 @@
+package co.featbit.openfeature;
+
+import dev.openfeature.sdk.ImmutableStructure;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the provider overhead of every {@link FBProvider} evaluation path against an offline client.
+ * The nested classes run the same benchmarks at different thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ProviderEvaluationBenchmark {
+
+    private static final Value STRUCTURE_DEFAULT = new Value(new ImmutableStructure(new HashMap<>()));
+    private static final Value LIST_DEFAULT = new Value(new ArrayList<>());
+
+    private FBProvider provider;
+
+    @Setup
+    public void setUp() throws IOException {
+        provider = BenchmarkData.initProviderInOfflineMode();
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.shutdown();
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Boolean> booleanEvaluation() {
+        return provider.getBooleanEvaluation("ff-test-bool", false, BenchmarkData.USER_4);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<String> stringEvaluation() {
+        return provider.getStringEvaluation("ff-test-string", "error", BenchmarkData.PHONE_NUMBER);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Integer> integerEvaluation() {
+        return provider.getIntegerEvaluation("ff-test-number", -1, BenchmarkData.USER_1);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Double> doubleEvaluation() {
+        return provider.getDoubleEvaluation("ff-test-number", -1D, BenchmarkData.USER_3);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Value> objectEvaluationWithNullDefault() {
+        return provider.getObjectEvaluation("ff-test-string", new Value(), BenchmarkData.USER_1);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Value> objectEvaluationWithStringDefault() {
+        return provider.getObjectEvaluation("ff-test-string", new Value("error"), BenchmarkData.USER_1);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Value> objectEvaluationWithBooleanDefault() {
+        return provider.getObjectEvaluation("ff-test-bool", new Value(false), BenchmarkData.USER_4);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Value> objectEvaluationWithDoubleDefault() {
+        return provider.getObjectEvaluation("ff-test-number", new Value(-1D), BenchmarkData.USER_4);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Value> objectEvaluationWithIntegerDefault() {
+        return provider.getObjectEvaluation("ff-test-number", new Value(-1), BenchmarkData.USER_4);
+    }
+
+    // the test data has no list flag: this measures the type mismatch path of a list default
+    @Benchmark
+    public ProviderEvaluation<Value> objectEvaluationWithListDefault() {
+        return provider.getObjectEvaluation("ff-test-json", LIST_DEFAULT, BenchmarkData.USER_1);
+    }
+
+    @Benchmark
+    public ProviderEvaluation<Value> objectEvaluationWithStructureDefault() {
+        return provider.getObjectEvaluation("ff-test-json", STRUCTURE_DEFAULT, BenchmarkData.USER_1);
+    }
+
+    @Threads(1)
+    public static class OneThread extends ProviderEvaluationBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends ProviderEvaluationBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends ProviderEvaluationBenchmark {
+    }
+
+}
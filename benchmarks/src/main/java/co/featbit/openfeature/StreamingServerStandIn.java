@@ -0,0 +1,161 @@
+package co.featbit.openfeature;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process stand-in of the FeatBit streaming endpoint, speaking the data-sync protocol of the SDK:
+ * a full data set answers every data-sync request, and scripted updates are pushed as patch messages.
+ * Insight events are accepted and dropped.
+ */
+final class StreamingServerStandIn implements Closeable {
+    private final MockWebServer server = new MockWebServer();
+    private final List<WebSocket> sessions = new CopyOnWriteArrayList<>();
+    private volatile FlagDataSet data;
+
+    StreamingServerStandIn(FlagDataSet data) throws IOException {
+        this.data = data;
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path != null && path.startsWith("/streaming")) {
+                    return new MockResponse().withWebSocketUpgrade(new Session());
+                }
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        server.start();
+    }
+
+    String streamingUrl() {
+        return "ws://" + server.getHostName() + ":" + server.getPort();
+    }
+
+    String eventUrl() {
+        return "http://" + server.getHostName() + ":" + server.getPort();
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Pushes a patch of the given flags to every connected client, with a new version.
+     *
+     * @param flags the updated flags
+     * @return the number of clients the patch was sent to
+     */
+    int pushFlags(Collection<JsonObject> flags) {
+        Map<String, JsonObject> updated = new LinkedHashMap<>(data.getFlags());
+        JsonArray flagArray = new JsonArray(flags.size());
+        String updatedAt = Instant.now().toString();
+        for (JsonObject flag : flags) {
+            JsonObject patched = flag.deepCopy();
+            patched.addProperty("updatedAt", updatedAt);
+            flagArray.add(patched);
+            updated.put(FlagDataSet.flagKey(patched), patched);
+        }
+        data = new FlagDataSet(updated, data.getSegments());
+        String message = patch(flagArray).toString();
+        int sent = 0;
+        for (WebSocket session : sessions) {
+            if (session.send(message)) {
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (WebSocket session : sessions) {
+            session.close(1000, "closed");
+        }
+        server.shutdown();
+    }
+
+    /**
+     * The flags of the test data set, and {@code count} copies of a template flag with the keys
+     * {@code <prefix>0} to {@code <prefix>count-1}.
+     */
+    static FlagDataSet withSyntheticFlags(FlagDataSet data, String templateKey, String prefix, int count) {
+        JsonObject template = data.getFlags().get(templateKey);
+        Map<String, JsonObject> flags = new LinkedHashMap<>(data.getFlags());
+        for (int i = 0; i < count; i++) {
+            JsonObject flag = template.deepCopy();
+            flag.addProperty("id", UUID.randomUUID().toString());
+            flag.addProperty("key", prefix + i);
+            flag.addProperty("name", prefix + i);
+            flags.put(prefix + i, flag);
+        }
+        return new FlagDataSet(flags, data.getSegments());
+    }
+
+    static List<JsonObject> flags(FlagDataSet data, String prefix, int count) {
+        List<JsonObject> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            res.add(data.getFlags().get(prefix + i));
+        }
+        return res;
+    }
+
+    private static JsonObject patch(JsonArray flags) {
+        JsonObject body = new JsonObject();
+        body.addProperty("eventType", "patch");
+        body.add("featureFlags", flags);
+        body.add("segments", new JsonArray());
+        JsonObject message = new JsonObject();
+        message.addProperty("messageType", "data-sync");
+        message.add("data", body);
+        return message;
+    }
+
+    private final class Session extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            sessions.add(webSocket);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            String messageType = JsonParser.parseString(text).getAsJsonObject().get("messageType").getAsString();
+            if ("data-sync".equals(messageType)) {
+                // always answer with the full data set, whatever the version of the client
+                webSocket.send(data.toDataSyncJson());
+            } else if ("ping".equals(messageType)) {
+                webSocket.send("{\"messageType\":\"pong\",\"data\":{}}");
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            sessions.remove(webSocket);
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            sessions.remove(webSocket);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import dev.openfeature.sdk.Client;
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.NoOpProvider;
+import dev.openfeature.sdk.OpenFeatureAPI;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load harness: a provider synchronized with a {@link StreamingServerStandIn} evaluates flags on N threads
+ * while the server pushes an update of M flags. For each thread count and update size, it reports the evaluation
+ * throughput and latency before and during the update, and the delay between the push and the first and last
+ * {@code PROVIDER_CONFIGURATION_CHANGED} events received by an OpenFeature handler.
+ * <p>
+ * Unlike the JMH benchmarks, it runs as a plain main class:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar co.featbit.openfeature.UpdateLatencyHarness [threads] [update sizes] [window ms]
+ * java -cp benchmarks/target/benchmarks.jar co.featbit.openfeature.UpdateLatencyHarness 1,4,16 1,100,1000,10000 0
+ * </pre>
+ */
+public final class UpdateLatencyHarness {
+    private static final String FLAG_PREFIX = "ff-load-";
+    private static final Duration PHASE_TIME = Duration.ofSeconds(3);
+    private static final Duration UPDATE_TIMEOUT = Duration.ofMinutes(1);
+    private static final EvaluationContext[] CONTEXTS = {
+            BenchmarkData.USER_1, BenchmarkData.USER_3, BenchmarkData.USER_4, BenchmarkData.PHONE_NUMBER
+    };
+
+    private UpdateLatencyHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = parse(args.length > 0 ? args[0] : "1,4,16");
+        int[] updateSizes = parse(args.length > 1 ? args[1] : "1,10,100,1000,5000");
+        Duration window = Duration.ofMillis(args.length > 2 ? Long.parseLong(args[2]) : 0L);
+        int flagCount = Arrays.stream(updateSizes).max().orElse(1);
+        FlagDataSet data = StreamingServerStandIn.withSyntheticFlags(
+                FlagDataSet.parse(BenchmarkData.readResource("fbclient_test_data.json")), "ff-test-bool", FLAG_PREFIX, flagCount);
+
+        System.out.printf("%7s %7s | %12s %10s %10s | %12s %10s %10s | %12s %12s%n",
+                "threads", "update",
+                "steady op/s", "p50 ns", "p99 ns",
+                "update op/s", "p50 ns", "p99 ns",
+                "first evt ms", "last evt ms");
+        try (StreamingServerStandIn server = new StreamingServerStandIn(data)) {
+            for (int threads : threadCounts) {
+                for (int updateSize : updateSizes) {
+                    run(server, data, flagCount, threads, updateSize, window);
+                }
+            }
+        } finally {
+            OpenFeatureAPI.getInstance().shutdown();
+        }
+    }
+
+    private static void run(StreamingServerStandIn server,
+                            FlagDataSet data,
+                            int flagCount,
+                            int threads,
+                            int updateSize,
+                            Duration window) throws Exception {
+        FBConfig.Builder config = new FBConfig.Builder()
+                .streamingURL(server.streamingUrl())
+                .eventURL(server.eventUrl());
+        FBProviderOptions options = new FBProviderOptions.Builder()
+                .configurationChangeWindow(window)
+                .build();
+        String domain = "update-latency-" + threads + "-" + updateSize;
+        OpenFeatureAPI.getInstance().setProviderAndWait(domain, new FBProvider("env-secret", config, options));
+        Client client = OpenFeatureAPI.getInstance().getClient(domain);
+
+        Set<String> pending = ConcurrentHashMap.newKeySet();
+        AtomicLong firstEvent = new AtomicLong();
+        AtomicLong lastEvent = new AtomicLong();
+        CountDownLatch updated = new CountDownLatch(1);
+        client.onProviderConfigurationChanged(details -> {
+            long now = System.nanoTime();
+            for (String flagKey : details.getFlagsChanged()) {
+                // only the events of the pushed update count
+                if (pending.remove(flagKey)) {
+                    firstEvent.compareAndSet(0L, now);
+                    if (pending.isEmpty()) {
+                        lastEvent.set(now);
+                        updated.countDown();
+                    }
+                }
+            }
+        });
+
+        AtomicReference<Phase> phase = new AtomicReference<>(new Phase());
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Phase current;
+                while ((current = phase.get()) != null) {
+                    String flagKey = FLAG_PREFIX + random.nextInt(flagCount);
+                    EvaluationContext ctx = CONTEXTS[random.nextInt(CONTEXTS.length)];
+                    long start = System.nanoTime();
+                    client.getBooleanValue(flagKey, false, ctx);
+                    current.record(System.nanoTime() - start);
+                }
+            }, "update-latency-worker-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        // warm up, then measure the steady state
+        Thread.sleep(PHASE_TIME.toMillis());
+        Phase steady = new Phase();
+        phase.set(steady);
+        Thread.sleep(PHASE_TIME.toMillis());
+
+        List<String> flagKeys = new ArrayList<>(updateSize);
+        for (int i = 0; i < updateSize; i++) {
+            flagKeys.add(FLAG_PREFIX + i);
+        }
+        pending.addAll(flagKeys);
+        Phase update = new Phase();
+        phase.set(update);
+        long pushed = System.nanoTime();
+        server.pushFlags(StreamingServerStandIn.flags(data, FLAG_PREFIX, updateSize));
+        boolean complete = updated.await(UPDATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        long updateEnd = System.nanoTime();
+
+        phase.set(null);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        // replacing the provider shuts it down
+        OpenFeatureAPI.getInstance().setProviderAndWait(domain, new NoOpProvider());
+
+        System.out.printf("%7d %7d | %12.0f %10d %10d | %12.0f %10d %10d | %12.2f %12s%n",
+                threads, updateSize,
+                steady.throughput(PHASE_TIME.toNanos()), steady.percentile(50), steady.percentile(99),
+                update.throughput(updateEnd - pushed), update.percentile(50), update.percentile(99),
+                firstEvent.get() == 0L ? Double.NaN : (firstEvent.get() - pushed) / 1e6,
+                complete ? String.format("%.2f", (lastEvent.get() - pushed) / 1e6) : "timeout");
+    }
+
+    private static int[] parse(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static final class Phase {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder operations = new LongAdder();
+
+        void record(long nanos) {
+            latencies.record(nanos);
+            operations.increment();
+        }
+
+        double throughput(long elapsedNanos) {
+            return elapsedNanos <= 0 ? 0D : operations.sum() * 1e9 / elapsedNanos;
+        }
+
+        long percentile(double percentile) {
+            return LatencyHistogram.percentileNanos(latencies.bucketCounts(), percentile);
+        }
+    }
+}
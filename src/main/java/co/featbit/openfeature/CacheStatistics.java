@@ -0,0 +1,62 @@
+package co.featbit.openfeature;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Point-in-time counters of a provider cache.
+ */
+public final class CacheStatistics {
+    static final CacheStatistics EMPTY = new CacheStatistics(0, 0, 0, 0);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+
+    private CacheStatistics(long hitCount, long missCount, long evictionCount, long size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    static CacheStatistics of(CacheStats stats, long size) {
+        return of(stats, 0, size);
+    }
+
+    // the stale hits are entries found but rebuilt, counted as misses
+    static CacheStatistics of(CacheStats stats, long staleHitCount, long size) {
+        return new CacheStatistics(stats.hitCount() - staleHitCount, stats.missCount() + staleHitCount, stats.evictionCount(), size);
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+package co.featbit.openfeature;
+
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+
+import java.util.Map;
+
+/**
+ * The evaluations of the flags of a cohort run for one of its contexts, see {@link FBProvider#evaluateCohort}.
+ */
+public final class CohortEvaluation {
+    private final EvaluationContext context;
+    private final Map<String, ProviderEvaluation<Value>> evaluations;
+
+    CohortEvaluation(EvaluationContext context, Map<String, ProviderEvaluation<Value>> evaluations) {
+        this.context = context;
+        this.evaluations = evaluations;
+    }
+
+    public EvaluationContext getContext() {
+        return context;
+    }
+
+    /**
+     * @return the evaluations by flag key, in the order of the requested flag keys
+     */
+    public Map<String, ProviderEvaluation<Value>> getEvaluations() {
+        return evaluations;
+    }
+
+    public ProviderEvaluation<Value> getEvaluation(String flagKey) {
+        return evaluations.get(flagKey);
+    }
+}
@@ -0,0 +1,84 @@
+package co.featbit.openfeature;
+
+import dev.openfeature.sdk.EvaluationContext;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+
+/**
+ * Evaluates the contexts of a cohort on a dedicated fork-join pool, reading at most {@code maxInFlight} contexts
+ * ahead of the consumer, and returns the results in the order of the contexts.
+ * <p>
+ * It is consumed by a single thread, and must be closed to release the pool if it is not exhausted.
+ */
+final class CohortIterator implements Iterator<CohortEvaluation>, AutoCloseable {
+    private final Iterator<? extends EvaluationContext> contexts;
+    private final Function<EvaluationContext, CohortEvaluation> evaluation;
+    private final int maxInFlight;
+    private final ForkJoinPool pool;
+    private final Runnable onClose;
+    private final Deque<CompletableFuture<CohortEvaluation>> inFlight = new ArrayDeque<>();
+    private boolean closed;
+
+    CohortIterator(Iterator<? extends EvaluationContext> contexts,
+                   Function<EvaluationContext, CohortEvaluation> evaluation,
+                   CohortOptions options,
+                   Runnable onClose) {
+        this.contexts = contexts;
+        this.evaluation = evaluation;
+        this.maxInFlight = options.getMaxInFlight();
+        this.onClose = onClose;
+        // fifo scheduling, the tasks are independent
+        this.pool = new ForkJoinPool(options.getParallelism(), forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("featbit-provider-cohort-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        if (inFlight.isEmpty()) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public CohortEvaluation next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        // unchecked exceptions of an evaluation are rethrown wrapped in a CompletionException
+        CohortEvaluation res = inFlight.poll().join();
+        fill();
+        return res;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        inFlight.forEach(future -> future.cancel(false));
+        inFlight.clear();
+        pool.shutdownNow();
+        onClose.run();
+    }
+
+    private void fill() {
+        while (!closed && inFlight.size() < maxInFlight && contexts.hasNext()) {
+            EvaluationContext ctx = contexts.next();
+            inFlight.add(CompletableFuture.supplyAsync(() -> evaluation.apply(ctx), pool));
+        }
+    }
+}
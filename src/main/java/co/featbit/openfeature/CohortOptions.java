@@ -0,0 +1,92 @@
+package co.featbit.openfeature;
+
+/**
+ * Options of {@link FBProvider#evaluateCohort}.
+ * <pre>{@code
+ * CohortOptions options = new CohortOptions.Builder()
+ *         .parallelism(8)
+ *         .sendInsights(false)
+ *         .build();
+ * }</pre>
+ */
+public final class CohortOptions {
+    static final CohortOptions DEFAULT = new Builder().build();
+
+    private final int parallelism;
+    private final int maxInFlight;
+    private final boolean sendInsights;
+
+    private CohortOptions(Builder builder) {
+        this.parallelism = builder.parallelism;
+        this.maxInFlight = builder.maxInFlight > 0 ? builder.maxInFlight : builder.parallelism * 64;
+        this.sendInsights = builder.sendInsights;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public boolean isSendInsights() {
+        return sendInsights;
+    }
+
+    public static final class Builder {
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int maxInFlight = 0;
+        private boolean sendInsights = true;
+
+        public Builder() {
+        }
+
+        /**
+         * The number of threads evaluating the cohort, the number of processors by default.
+         *
+         * @param parallelism the number of threads
+         * @return the builder
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("The parallelism must be positive.");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * The maximum number of contexts read ahead of the consumer of the results, which bounds the memory of a run;
+         * 64 times the parallelism by default.
+         *
+         * @param maxInFlight the maximum number of contexts being evaluated or waiting to be consumed
+         * @return the builder
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("The max in flight must be positive.");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Whether the evaluations are reported to FeatBit insights, true by default.
+         * <p>
+         * Without insights, the cohort is evaluated by an offline copy of the current flags, which needs a provider
+         * built from a {@code FBConfig.Builder}.
+         *
+         * @param sendInsights false to skip the insights
+         * @return the builder
+         */
+        public Builder sendInsights(boolean sendInsights) {
+            this.sendInsights = sendInsights;
+            return this;
+        }
+
+        public CohortOptions build() {
+            return new CohortOptions(this);
+        }
+    }
+}
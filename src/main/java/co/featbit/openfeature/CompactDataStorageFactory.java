@@ -0,0 +1,276 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.Factory;
+import co.featbit.server.exterior.Context;
+import co.featbit.server.exterior.DataStorage;
+import co.featbit.server.exterior.DataStorageFactory;
+import co.featbit.server.exterior.DataStorageTypes;
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.annotations.SerializedName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Data storage for the FeatBit client that keeps the large user key lists of the flags and segments, such as the
+ * included and excluded users of a segment or the target users of a flag, in a compact form: hashed and sorted
+ * primitive arrays, optionally off the heap, behind an optional bloom filter.
+ * <p>
+ * The flags and segments are stored by the in-memory storage of the SDK, or any other one, after their key lists
+ * of at least {@link Builder#minListSize(int)} keys are replaced. The SDK evaluates the membership of a user with
+ * {@code List#contains}, which becomes a hash lookup instead of a linear scan. Only the known key lists of the SDK
+ * models are replaced, found by their serialized names: the {@code included} and {@code excluded} users of a segment
+ * and the {@code keyIds} of the {@code targetUsers} of a flag. If the models have none of them, a warning is logged
+ * and the items are stored as they are, see {@link #getCompactedListCount()}.
+ * <p>
+ * The replaced lists keep their order, but each read of a key decodes it: the provider features that copy the flags
+ * in the wire format, such as the flag snapshot, decode all the keys of an item whenever it changes.
+ * <pre>{@code
+ * FBConfig config = new FBConfig.Builder()
+ *         .streamingURL(STREAM_URL)
+ *         .eventURL(EVENT_URL)
+ *         .dataStorageFactory(new CompactDataStorageFactory.Builder().offHeap(true).build())
+ *         .build();
+ * }</pre>
+ */
+public final class CompactDataStorageFactory implements DataStorageFactory {
+    private static final Logger logger = LoggerFactory.getLogger(CompactDataStorageFactory.class);
+    // the user key lists of the models, by serialized name
+    private static final Set<String> KEY_LIST_FIELDS = ImmutableSet.of("included", "excluded", "keyIds");
+    // the lists of models that hold key lists: flag -> target users -> keys
+    private static final Set<String> MODEL_LIST_FIELDS = ImmutableSet.of("targetUsers");
+    private static final ConcurrentMap<Class<?>, List<Field>> LIST_FIELDS = new ConcurrentHashMap<>();
+
+    private final DataStorageFactory delegate;
+    private final int minListSize;
+    private final boolean bloomFilter;
+    private final boolean offHeap;
+    private final AtomicBoolean warned = new AtomicBoolean();
+    private final LongAdder compactedLists = new LongAdder();
+
+    private CompactDataStorageFactory(Builder builder) {
+        this.delegate = builder.delegate;
+        this.minListSize = builder.minListSize;
+        this.bloomFilter = builder.bloomFilter;
+        this.offHeap = builder.offHeap;
+    }
+
+    @Override
+    public DataStorage createDataStorage(Context context) {
+        return new CompactDataStorage(delegate.createDataStorage(context));
+    }
+
+    /**
+     * @return the number of key lists compacted so far, 0 if the flags and segments are stored as they are
+     */
+    public long getCompactedListCount() {
+        return compactedLists.sum();
+    }
+
+    // replaces the key lists of a model item in place, the item is not shared yet
+    void compact(Object item) {
+        try {
+            List<Field> fields = listFields(item.getClass());
+            if (fields.isEmpty()) {
+                warn("FB JAVA PROVIDER: {} has no known key list, its items are stored as they are", item.getClass().getName(), null);
+                return;
+            }
+            compact(item, fields);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            warn("FB JAVA PROVIDER: failed to compact the key lists of {}, its items are stored as they are", item.getClass().getName(), e);
+        }
+    }
+
+    private void compact(Object item, List<Field> fields) throws ReflectiveOperationException {
+        for (Field field : fields) {
+            List<?> list = (List<?>) field.get(item);
+            if (list == null || list instanceof CompactKeyList) {
+                continue;
+            }
+            if (MODEL_LIST_FIELDS.contains(serializedName(field))) {
+                for (Object element : list) {
+                    if (element != null && isModel(element.getClass())) {
+                        compact(element, listFields(element.getClass()));
+                    }
+                }
+            } else if (list.size() >= minListSize && isKeyList(list)) {
+                @SuppressWarnings("unchecked")
+                List<String> keys = (List<String>) list;
+                field.set(item, CompactKeyList.of(keys, offHeap, bloomFilter));
+                compactedLists.increment();
+            }
+        }
+    }
+
+    private void warn(String message, String type, Exception e) {
+        if (warned.compareAndSet(false, true)) {
+            logger.warn(message, type, e);
+        }
+    }
+
+    private static boolean isKeyList(List<?> list) {
+        if (list.isEmpty()) {
+            return false;
+        }
+        for (Object element : list) {
+            if (!(element instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isModel(Class<?> type) {
+        return type.getName().startsWith("co.featbit.");
+    }
+
+    // the known key lists and lists of models of a model
+    private static List<Field> listFields(Class<?> type) {
+        List<Field> res = LIST_FIELDS.get(type);
+        if (res != null) {
+            return res;
+        }
+        res = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                String name = serializedName(field);
+                if (!Modifier.isStatic(field.getModifiers())
+                        && List.class.isAssignableFrom(field.getType())
+                        && (KEY_LIST_FIELDS.contains(name) || MODEL_LIST_FIELDS.contains(name))) {
+                    field.setAccessible(true);
+                    res.add(field);
+                }
+            }
+        }
+        LIST_FIELDS.putIfAbsent(type, res);
+        return res;
+    }
+
+    // the models are deserialized with Gson, the name of a field in the wire format
+    private static String serializedName(Field field) {
+        SerializedName name = field.getAnnotation(SerializedName.class);
+        return name == null ? field.getName() : name.value();
+    }
+
+    private final class CompactDataStorage implements DataStorage {
+        private final DataStorage storage;
+
+        private CompactDataStorage(DataStorage storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public void init(Map<DataStorageTypes.Category, Map<String, DataStorageTypes.Item>> allData, Long version) {
+            allData.values().forEach(items -> items.values().forEach(CompactDataStorageFactory.this::compact));
+            storage.init(allData, version);
+        }
+
+        @Override
+        public DataStorageTypes.Item get(DataStorageTypes.Category category, String key) {
+            return storage.get(category, key);
+        }
+
+        @Override
+        public Map<String, DataStorageTypes.Item> getAll(DataStorageTypes.Category category) {
+            return storage.getAll(category);
+        }
+
+        @Override
+        public boolean upsert(DataStorageTypes.Category category, String key, DataStorageTypes.Item item, Long version) {
+            compact(item);
+            return storage.upsert(category, key, item, version);
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return storage.isInitialized();
+        }
+
+        @Override
+        public long getVersion() {
+            return storage.getVersion();
+        }
+
+        @Override
+        public void close() throws IOException {
+            storage.close();
+        }
+    }
+
+    public static final class Builder {
+        private DataStorageFactory delegate = Factory.inMemoryDataStorageFactory();
+        private int minListSize = 1_000;
+        private boolean bloomFilter = true;
+        private boolean offHeap = false;
+
+        public Builder() {
+        }
+
+        /**
+         * The storage of the compacted flags and segments, the in-memory storage of the SDK by default.
+         *
+         * @param delegate the data storage factory
+         * @return the builder
+         */
+        public Builder delegate(DataStorageFactory delegate) {
+            if (delegate == null) {
+                throw new IllegalArgumentException("The data storage factory must not be null.");
+            }
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Only compacts the key lists of at least {@code size} keys, 1 000 by default; the small lists are faster to
+         * scan as they are.
+         *
+         * @param size the minimum number of keys
+         * @return the builder
+         */
+        public Builder minListSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("The min list size must be positive.");
+            }
+            this.minListSize = size;
+            return this;
+        }
+
+        /**
+         * Rejects most of the users that are not in a key list with a bloom filter of about 10 bits per key,
+         * enabled by default.
+         *
+         * @param enabled true to use a bloom filter
+         * @return the builder
+         */
+        public Builder bloomFilter(boolean enabled) {
+            this.bloomFilter = enabled;
+            return this;
+        }
+
+        /**
+         * Stores the bytes of the keys in direct buffers, out of the heap; the hashes and offsets stay on the heap.
+         *
+         * @param enabled true to store the keys off the heap
+         * @return the builder
+         */
+        public Builder offHeap(boolean enabled) {
+            this.offHeap = enabled;
+            return this;
+        }
+
+        public CompactDataStorageFactory build() {
+            return new CompactDataStorageFactory(this);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package co.featbit.openfeature;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of user keys, stored in primitive arrays instead of one {@link String} per key, with a hash lookup
+ * for {@link #contains}.
+ * <p>
+ * The keys are sorted by their 64-bit hash: {@code hashes} holds the sorted hashes, and {@code offsets} the positions
+ * of the UTF-8 bytes of the matching keys in a single buffer, on or off the heap. A membership test is a binary search
+ * on the hashes followed by a byte comparison, optionally preceded by a bloom filter that rejects most non-members
+ * without touching the arrays.
+ * <p>
+ * The list keeps the original order: {@code order} maps an index to the sorted position of its key, 4 more bytes per
+ * key. {@link #get} decodes a new string, so iterating the list allocates; {@link #indexOf} is a linear scan, as for
+ * any list, while {@link #contains} is the hash lookup.
+ */
+final class CompactKeyList extends AbstractList<String> implements RandomAccess {
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final long[] hashes;
+    // offsets[i] is the start of the i-th key in keys, offsets[size] the end of the last one
+    private final int[] offsets;
+    private final ByteBuffer keys;
+    // order[i] is the sorted position of the i-th key of the original list
+    private final int[] order;
+    private final BloomFilter bloomFilter;
+
+    private CompactKeyList(long[] hashes, int[] offsets, ByteBuffer keys, int[] order, BloomFilter bloomFilter) {
+        this.hashes = hashes;
+        this.offsets = offsets;
+        this.keys = keys;
+        this.order = order;
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * @param keys        the keys, duplicates are kept
+     * @param offHeap     true to store the key bytes in a direct buffer
+     * @param bloomFilter true to reject non-members with a bloom filter first
+     */
+    static CompactKeyList of(Collection<String> keys, boolean offHeap, boolean bloomFilter) {
+        int size = keys.size();
+        byte[][] bytes = new byte[size][];
+        long[] sorted = new long[size];
+        // the original index of each sorted hash
+        int[] indexes = new int[size];
+        long totalLength = 0;
+        int i = 0;
+        for (String key : keys) {
+            bytes[i] = key.getBytes(StandardCharsets.UTF_8);
+            totalLength += bytes[i].length;
+            sorted[i] = hash(bytes[i]);
+            indexes[i] = i;
+            i++;
+        }
+        if (totalLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many keys to compact: " + totalLength + " bytes");
+        }
+        sort(sorted, indexes, 0, size - 1);
+
+        int[] offsets = new int[size + 1];
+        int[] order = new int[size];
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect((int) totalLength) : ByteBuffer.allocate((int) totalLength);
+        BloomFilter filter = bloomFilter && size > 0 ? new BloomFilter(size) : null;
+        for (i = 0; i < size; i++) {
+            order[indexes[i]] = i;
+            offsets[i] = buffer.position();
+            buffer.put(bytes[indexes[i]]);
+            if (filter != null) {
+                filter.add(sorted[i]);
+            }
+        }
+        offsets[size] = buffer.position();
+        return new CompactKeyList(sorted, offsets, buffer, order, filter);
+    }
+
+    // sorts the hashes along with their indexes, on the primitive arrays: a quicksort with a three-way partition,
+    // as the duplicate keys have the same hash
+    private static void sort(long[] hashes, int[] indexes, int low, int high) {
+        while (high - low >= INSERTION_SORT_THRESHOLD) {
+            long pivot = median(hashes[low], hashes[(low + high) >>> 1], hashes[high]);
+            // [low, lt) < pivot, [lt, i) == pivot, (gt, high] > pivot
+            int lt = low;
+            int gt = high;
+            int i = low;
+            while (i <= gt) {
+                if (hashes[i] < pivot) {
+                    swap(hashes, indexes, lt++, i++);
+                } else if (hashes[i] > pivot) {
+                    swap(hashes, indexes, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            // recurse into the smaller side, so that the stack stays logarithmic
+            if (lt - low < high - gt) {
+                sort(hashes, indexes, low, lt - 1);
+                low = gt + 1;
+            } else {
+                sort(hashes, indexes, gt + 1, high);
+                high = lt - 1;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && hashes[j - 1] > hashes[j]; j--) {
+                swap(hashes, indexes, j - 1, j);
+            }
+        }
+    }
+
+    private static long median(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] hashes, int[] indexes, int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        int index = indexes[i];
+        indexes[i] = indexes[j];
+        indexes[j] = index;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= hashes.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + hashes.length);
+        }
+        int position = order[index];
+        int start = offsets[position];
+        int length = offsets[position + 1] - start;
+        if (keys.hasArray()) {
+            return new String(keys.array(), keys.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        // a view, the buffer is read by several threads
+        ByteBuffer view = keys.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int size() {
+        return hashes.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String) || hashes.length == 0) {
+            return false;
+        }
+        byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+        long hash = hash(bytes);
+        if (bloomFilter != null && !bloomFilter.mightContain(hash)) {
+            return false;
+        }
+        int position = Arrays.binarySearch(hashes, hash);
+        if (position < 0) {
+            return false;
+        }
+        // the keys of the same hash are contiguous
+        while (position > 0 && hashes[position - 1] == hash) {
+            position--;
+        }
+        for (; position < hashes.length && hashes[position] == hash; position++) {
+            if (equalsAt(position, bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!contains(o)) {
+            return -1;
+        }
+        byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+        long hash = hash(bytes);
+        for (int i = 0; i < order.length; i++) {
+            if (hashes[order[i]] == hash && equalsAt(order[i], bytes)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (!contains(o)) {
+            return -1;
+        }
+        byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+        long hash = hash(bytes);
+        for (int i = order.length - 1; i >= 0; i--) {
+            if (hashes[order[i]] == hash && equalsAt(order[i], bytes)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // an estimate of the memory held by the list, for the benchmarks
+    long sizeInBytes() {
+        return 8L * hashes.length + 4L * offsets.length + 4L * order.length + keys.capacity()
+                + (bloomFilter == null ? 0 : bloomFilter.sizeInBytes());
+    }
+
+    // compares the key at a sorted position
+    private boolean equalsAt(int position, byte[] bytes) {
+        int start = offsets[position];
+        if (offsets[position + 1] - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (keys.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bit FNV-1a on the UTF-8 bytes, finalized with the MurmurHash3 mixer
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // about 1% false positives with 10 bits and 7 probes per key
+    private static final class BloomFilter {
+        private static final int BITS_PER_KEY = 10;
+        private static final int PROBES = 7;
+
+        private final long[] bits;
+        private final long mask;
+
+        private BloomFilter(int size) {
+            long bitCount = Long.highestOneBit(Math.max(64L, (long) size * BITS_PER_KEY) * 2 - 1);
+            this.bits = new long[(int) (bitCount >>> 6)];
+            this.mask = bitCount - 1;
+        }
+
+        private void add(long hash) {
+            // double hashing with the two halves of the hash
+            long h1 = hash;
+            long h2 = (hash >>> 32) | 1L;
+            for (int i = 0; i < PROBES; i++) {
+                long bit = (h1 + i * h2) & mask;
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        private boolean mightContain(long hash) {
+            long h1 = hash;
+            long h2 = (hash >>> 32) | 1L;
+            for (int i = 0; i < PROBES; i++) {
+                long bit = (h1 + i * h2) & mask;
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long sizeInBytes() {
+            return 8L * bits.length;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableList;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Collects the keys of the changed flags and hands them over in batches, at the end of a time window that starts
+ * at the first change, or as soon as a batch is full.
+ * <p>
+ * The caller, the SDK's update thread, only adds a key under a short lock: batches are emitted on the scheduler.
+ * The scheduler may run several tasks at once, so the batches are queued in order and emitted by a single task
+ * at a time, like the {@link MetricTracker} drains its queue.
+ */
+final class ConfigurationChangeCoalescer {
+    private final ScheduledExecutorService scheduler;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Consumer<List<String>> emitter;
+    private final Queue<List<String>> batches = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean emitting = new AtomicBoolean();
+    // guarded by this
+    private Set<String> pending = new LinkedHashSet<>();
+    private boolean scheduled;
+
+    ConfigurationChangeCoalescer(ScheduledExecutorService scheduler,
+                                 Duration window,
+                                 int maxBatchSize,
+                                 Consumer<List<String>> emitter) {
+        this.scheduler = scheduler;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.emitter = emitter;
+    }
+
+    void flagChanged(String flagKey) {
+        boolean full = false;
+        synchronized (this) {
+            pending.add(flagKey);
+            if (pending.size() >= maxBatchSize) {
+                full = take();
+            } else if (!scheduled) {
+                scheduled = true;
+                try {
+                    scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // the provider is shut down
+                    scheduled = false;
+                    pending.clear();
+                }
+            }
+        }
+        if (full) {
+            scheduleEmit();
+        }
+    }
+
+    private void flush() {
+        boolean taken;
+        synchronized (this) {
+            scheduled = false;
+            taken = take();
+        }
+        if (taken) {
+            scheduleEmit();
+        }
+    }
+
+    // queues the pending keys under the lock, so that the batches keep the order of the changes
+    private boolean take() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        batches.add(ImmutableList.copyOf(pending));
+        pending = new LinkedHashSet<>();
+        return true;
+    }
+
+    private void scheduleEmit() {
+        if (!emitting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(this::emit);
+        } catch (RejectedExecutionException e) {
+            // the provider is shut down
+            emitting.set(false);
+            batches.clear();
+        }
+    }
+
+    private void emit() {
+        try {
+            List<String> batch;
+            while ((batch = batches.poll()) != null) {
+                emitter.accept(batch);
+            }
+        } finally {
+            emitting.set(false);
+        }
+        // a batch queued while the emission was finishing
+        if (!batches.isEmpty()) {
+            scheduleEmit();
+        }
+    }
+}
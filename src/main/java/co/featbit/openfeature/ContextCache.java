@@ -0,0 +1,74 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import dev.openfeature.sdk.EvaluationContext;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, concurrent cache of the {@link FBUser} built from an evaluation context, keyed by the context content.
+ * <p>
+ * A user is kept with the set of properties it was projected on. A hit for another set, such as a conversion
+ * racing with a change of the referenced properties, rebuilds the user, so a user is never served with the
+ * attributes of an older set. Such a rebuild is counted as a miss.
+ */
+final class ContextCache {
+    private static final class Entry {
+        private final FBUser user;
+        private final Set<String> properties;
+
+        private Entry(FBUser user, Set<String> properties) {
+            this.user = user;
+            this.properties = properties;
+        }
+    }
+
+    private final Converter.EvaluationContextConverter evaluationContextConverter = Converter.EvaluationContextConverter.INSTANCE;
+    private final Cache<ContextKey, Entry> cache;
+    private final LongAdder staleHits = new LongAdder();
+
+    ContextCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    FBUser toFBUser(EvaluationContext evaluationContext) {
+        return toFBUser(evaluationContext, (Set<String>) null);
+    }
+
+    FBUser toFBUser(EvaluationContext evaluationContext, Set<String> properties) {
+        if (evaluationContext == null) {
+            // let the converter reject it
+            return evaluationContextConverter.toFBUser(null);
+        }
+        return toFBUser(evaluationContext, ContextKey.of(evaluationContext), properties);
+    }
+
+    FBUser toFBUser(EvaluationContext evaluationContext, ContextKey key, Set<String> properties) {
+        Entry entry = cache.getIfPresent(key);
+        // the sets of referenced properties are immutable, a new set is a new instance
+        if (entry == null || entry.properties != properties) {
+            if (entry != null) {
+                staleHits.increment();
+            }
+            // invalid contexts throw here and are never cached
+            entry = new Entry(evaluationContextConverter.toFBUser(evaluationContext, properties), properties);
+            cache.put(key, entry);
+        }
+        return entry.user;
+    }
+
+    // frees the users projected on the previous referenced properties, they would be rebuilt anyway
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    CacheStatistics stats() {
+        return CacheStatistics.of(cache.stats(), staleHits.sum(), cache.size());
+    }
+}
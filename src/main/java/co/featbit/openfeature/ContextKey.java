@@ -0,0 +1,70 @@
+package co.featbit.openfeature;
+
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.Value;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Content fingerprint of an evaluation context: the targeting key plus the string attributes,
+ * that is everything {@link Converter.EvaluationContextConverter} reads to build a {@code FBUser}.
+ * <p>
+ * The attributes are kept as a flat array of names and values sorted by name, hashed once. They are read one by one
+ * through {@code keySet()} and {@code getValue}, which saves the map of {@code asMap()}; an {@code ImmutableContext}
+ * still copies its key set and clones each value it returns.
+ */
+final class ContextKey {
+    // the targeting key, then the name and value of each string attribute
+    private final String[] values;
+    private final int hash;
+
+    private ContextKey(String[] values) {
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+    }
+
+    static ContextKey of(EvaluationContext evaluationContext) {
+        Set<String> names = evaluationContext.keySet();
+        String[] values = new String[1 + 2 * names.size()];
+        values[0] = evaluationContext.getTargetingKey();
+        int length = 1;
+        for (String name : names) {
+            Value value = evaluationContext.getValue(name);
+            if (value != null && value.isString()) {
+                values[length++] = name;
+                values[length++] = value.asString();
+            }
+        }
+        sortByName(values, length);
+        return new ContextKey(length == values.length ? values : Arrays.copyOf(values, length));
+    }
+
+    // insertion sort of the name and value pairs, contexts hold a few attributes
+    private static void sortByName(String[] values, int length) {
+        for (int i = 3; i < length; i += 2) {
+            String name = values[i];
+            String value = values[i + 1];
+            int j = i - 2;
+            for (; j >= 1 && values[j].compareTo(name) > 0; j -= 2) {
+                values[j + 2] = values[j];
+                values[j + 3] = values[j + 1];
+            }
+            values[j + 2] = name;
+            values[j + 3] = value;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContextKey that = (ContextKey) o;
+        return hash == that.hash && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -3,14 +3,23 @@ package co.featbit.openfeature;
 import co.featbit.commons.model.EvalDetail;
 import co.featbit.commons.model.FBUser;
 import co.featbit.server.EvaluationReason;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import dev.openfeature.sdk.*;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 abstract class Converter {
     static final class EvaluationContextConverter {
@@ -32,6 +41,27 @@ abstract class Converter {
             return buildSingleUser(builder, attributes);
         }
 
+        // only copies the given properties to the custom attributes, all of them if properties is null
+        FBUser toFBUser(EvaluationContext evaluationContext, Set<String> properties) {
+            if (properties == null || evaluationContext == null) {
+                return toFBUser(evaluationContext);
+            }
+            // look the attributes up one by one rather than copying the whole context with asMap()
+            String targetingKey = evaluationContext.getTargetingKey();
+            if (StringUtils.isBlank(targetingKey)) {
+                targetingKey = getTargetingKey(targetingKey, evaluationContext.getValue("key"), evaluationContext.getValue("keyid"));
+            }
+            final FBUser.Builder builder = new FBUser.Builder(targetingKey).userName(targetingKey);
+            setUserName(builder, evaluationContext.getValue("name"), evaluationContext.getValue("username"));
+            for (String property : properties) {
+                Value value = evaluationContext.getValue(property);
+                if (value != null && value.isString()) {
+                    builder.custom(property, value.asString());
+                }
+            }
+            return builder.build();
+        }
+
         private String getTargetingKey(String targetingKey, Value keyAsValue, Value keyIdAsValue) {
             if (StringUtils.isNotBlank(targetingKey)) {
                 return targetingKey;
@@ -45,13 +75,7 @@ abstract class Converter {
         }
 
         private FBUser buildSingleUser(FBUser.Builder builder, Map<String, Value> attributes) {
-            Value nameAsValue = attributes.get("name");
-            Value userNameAsValue = attributes.get("username");
-            if (nameAsValue != null && nameAsValue.isString() && StringUtils.isNotBlank(nameAsValue.asString())) {
-                builder.userName(nameAsValue.asString());
-            } else if (userNameAsValue != null && userNameAsValue.isString() && StringUtils.isNotBlank(userNameAsValue.asString())) {
-                builder.userName(userNameAsValue.asString());
-            }
+            setUserName(builder, attributes.get("name"), attributes.get("username"));
             attributes.forEach((key, value) -> {
                 if (value != null && value.isString()) {
                     builder.custom(key, value.asString());
@@ -60,12 +84,27 @@ abstract class Converter {
             return builder.build();
         }
 
+        private void setUserName(FBUser.Builder builder, Value nameAsValue, Value userNameAsValue) {
+            if (nameAsValue != null && nameAsValue.isString() && StringUtils.isNotBlank(nameAsValue.asString())) {
+                builder.userName(nameAsValue.asString());
+            } else if (userNameAsValue != null && userNameAsValue.isString() && StringUtils.isNotBlank(userNameAsValue.asString())) {
+                builder.userName(userNameAsValue.asString());
+            }
+        }
+
     }
 
     static final class EvaluationDetailConverter {
         static final EvaluationDetailConverter INSTANCE = new EvaluationDetailConverter();
 
+        private final Map<String, ErrorCode> errorCodes = new HashMap<>();
+
         private EvaluationDetailConverter() {
+            errorCodes.put(EvaluationReason.REASON_USER_NOT_SPECIFIED, ErrorCode.TARGETING_KEY_MISSING);
+            errorCodes.put(EvaluationReason.REASON_CLIENT_NOT_READY, ErrorCode.PROVIDER_NOT_READY);
+            errorCodes.put(EvaluationReason.REASON_FLAG_NOT_FOUND, ErrorCode.FLAG_NOT_FOUND);
+            errorCodes.put(EvaluationReason.REASON_ERROR, ErrorCode.GENERAL);
+            errorCodes.put(EvaluationReason.REASON_WRONG_TYPE, ErrorCode.TYPE_MISMATCH);
         }
 
 
@@ -75,74 +114,98 @@ abstract class Converter {
                     detail.isDefaultVariation());
         }
 
-        private <T> ProviderEvaluation<T> buildProviderEvaluation(T value, String reason, boolean isDefault) {
-            ProviderEvaluation.ProviderEvaluationBuilder<T> builder = ProviderEvaluation.<T>builder()
-                    .value(value)
-                    .reason(reason);
-            if (isDefault && isErrorCode(reason)) {
-                builder.errorCode(getErrorCode(reason));
-            }
-            return builder.build();
+        // ProviderEvaluation is mutable, so a cached evaluation is handed out as a new instance on each call
+        <T> ProviderEvaluation<T> copy(ProviderEvaluation<T> evaluation) {
+            return ProviderEvaluation.<T>builder()
+                    .value(evaluation.getValue())
+                    .variant(evaluation.getVariant())
+                    .reason(evaluation.getReason())
+                    .errorCode(evaluation.getErrorCode())
+                    .errorMessage(evaluation.getErrorMessage())
+                    .flagMetadata(evaluation.getFlagMetadata())
+                    .build();
         }
 
-        private boolean isErrorCode(String reason) {
-            switch (reason) {
-                case EvaluationReason.REASON_USER_NOT_SPECIFIED:
-                case EvaluationReason.REASON_CLIENT_NOT_READY:
-                case EvaluationReason.REASON_FLAG_NOT_FOUND:
-                case EvaluationReason.REASON_ERROR:
-                case EvaluationReason.REASON_WRONG_TYPE:
-                    return true;
-                default:
-                    return false;
-            }
-        }
-
-        private ErrorCode getErrorCode(String reason) {
-            switch (reason) {
-                case EvaluationReason.REASON_USER_NOT_SPECIFIED:
-                    return ErrorCode.TARGETING_KEY_MISSING;
-                case EvaluationReason.REASON_CLIENT_NOT_READY:
-                    return ErrorCode.PROVIDER_NOT_READY;
-                case EvaluationReason.REASON_FLAG_NOT_FOUND:
-                    return ErrorCode.FLAG_NOT_FOUND;
-                case EvaluationReason.REASON_WRONG_TYPE:
-                    return ErrorCode.TYPE_MISMATCH;
-                default:
-                    return ErrorCode.GENERAL;
-            }
-
+        private <T> ProviderEvaluation<T> buildProviderEvaluation(T value, String reason, boolean isDefault) {
+            // a single lookup resolves the error code, the successful reasons have none
+            ErrorCode errorCode = reason == null || !isDefault ? null : errorCodes.get(reason);
+            return ProviderEvaluation.<T>builder()
+                    .value(value)
+                    .reason(reason)
+                    .errorCode(errorCode)
+                    .build();
         }
 
-
     }
 
 
     static final class ValueConverter {
         static final ValueConverter INSTANCE = new ValueConverter();
 
+        private static final String VARIATION_TYPE_BOOLEAN = "boolean";
+        private static final String VARIATION_TYPE_NUMBER = "number";
+        private static final String VARIATION_TYPE_JSON = "json";
+
+        private static final Pattern JSON_NUMBER = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+
+        private final JsonValueDecoder jsonValueDecoder = JsonValueDecoder.INSTANCE;
+
         private ValueConverter() {
         }
 
+        // converts a raw variation with the variation type of its flag: boolean, number, json or string;
+        // an unknown type, or a variation that doesn't match its type, gives a string
+        Value fromVariation(String variation, String variationType) {
+            if (variation == null) {
+                return new Value();
+            }
+            if (variationType == null) {
+                return new Value(variation);
+            }
+            String trimmed = variation.trim();
+            switch (variationType) {
+                case VARIATION_TYPE_BOOLEAN:
+                    if ("true".equals(trimmed) || "false".equals(trimmed)) {
+                        return new Value(Boolean.parseBoolean(trimmed));
+                    }
+                    break;
+                case VARIATION_TYPE_NUMBER:
+                    if (JSON_NUMBER.matcher(trimmed).matches()) {
+                        return jsonValueDecoder.toNumberValue(trimmed);
+                    }
+                    break;
+                case VARIATION_TYPE_JSON:
+                    try {
+                        return jsonValueDecoder.decode(trimmed);
+                    } catch (JsonParseException ignore) {
+                        // not a json variation
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return new Value(variation);
+        }
+
         Value toValue(Object value) {
             if (value instanceof String) {
                 return new Value((String) value);
             } else if (value instanceof Boolean) {
                 return new Value(((Boolean) value).booleanValue());
             } else if (value instanceof Number) {
-                if (((Number) value).doubleValue() == ((Number) value).intValue())
-                    return new Value(((Number) value).intValue());
-                return new Value(((Number) value).doubleValue());
+                return toNumberValue((Number) value);
             } else if (value instanceof List) {
-                List<Value> lv = (List<Value>) ((List) value).stream()
-                        .map(this::toValue)
-                        .collect(Collectors.toList());
-                return new Value(lv);
+                List<?> list = (List<?>) value;
+                List<Value> lv = new ArrayList<>(list.size());
+                for (Object item : list) {
+                    lv.add(toValue(item));
+                }
+                // converted values may be shared between evaluations
+                return new Value(Collections.unmodifiableList(lv));
             } else if (value instanceof Map) {
-                Map<String, Value> converted = new HashMap<>();
-                ((Map) value).forEach((k, v) -> {
-                    converted.put(k.toString(), toValue(v));
-                });
+                Map<?, ?> map = (Map<?, ?>) value;
+                Map<String, Value> converted = new HashMap<>((int) (map.size() / 0.75f) + 1);
+                map.forEach((k, v) -> converted.put(k.toString(), toValue(v)));
                 return new Value(new ImmutableStructure(converted));
             } else if (value instanceof Instant) {
                 return new Value((Instant) value);
@@ -150,6 +213,145 @@ abstract class Converter {
                 return new Value();
             }
         }
+
+        private Value toNumberValue(Number number) {
+            if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+                return new Value(number.intValue());
+            } else if (number instanceof Long) {
+                return JsonValueDecoder.toIntegralValue(number.longValue());
+            }
+            double d = number.doubleValue();
+            // numbers deserialized into a Map are all doubles, integral ones that fit in an int are integers
+            if (d == Math.rint(d) && d >= Integer.MIN_VALUE && d <= Integer.MAX_VALUE) {
+                return new Value((int) d);
+            }
+            return new Value(d);
+        }
+    }
+
+    static final class JsonValueDecoder {
+        static final JsonValueDecoder INSTANCE = new JsonValueDecoder();
+
+        private static final Value TRUE = new Value(true);
+        private static final Value FALSE = new Value(false);
+        private static final Value NULL = new Value();
+        private static final Value EMPTY_STRING = new Value("");
+        private static final Value EMPTY_LIST = new Value(Collections.<Value>emptyList());
+        private static final Value EMPTY_STRUCTURE = new Value(new ImmutableStructure(Collections.emptyMap()));
+        private static final int SMALL_INT_MIN = -128;
+        private static final int SMALL_INT_MAX = 1023;
+        private static final Value[] SMALL_INTS = new Value[SMALL_INT_MAX - SMALL_INT_MIN + 1];
+        private static final boolean HOLDS_LONGS = holdsLongs();
+
+        static {
+            for (int i = 0; i < SMALL_INTS.length; i++) {
+                SMALL_INTS[i] = new Value(i + SMALL_INT_MIN);
+            }
+        }
+
+        private JsonValueDecoder() {
+        }
+
+        // decodes a json object or array token by token, without an intermediate Map or List
+        Value decode(String json) {
+            try (JsonReader reader = new JsonReader(new StringReader(json))) {
+                Value value = read(reader);
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new JsonSyntaxException("Unexpected content after the json value");
+                }
+                return value;
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                throw new JsonSyntaxException(e);
+            }
+        }
+
+        // an integral literal stays exact, anything else is a double
+        Value toNumberValue(String literal) {
+            if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+                try {
+                    return toIntegralValue(Long.parseLong(literal));
+                } catch (NumberFormatException ignore) {
+                    // beyond the long range
+                }
+            }
+            return new Value(Double.parseDouble(literal));
+        }
+
+        // a long beyond the int range is kept exact if the OpenFeature SDK holds longs; otherwise it becomes a double,
+        // which is only exact up to 2^53
+        static Value toIntegralValue(long number) {
+            if (number >= SMALL_INT_MIN && number <= SMALL_INT_MAX) {
+                return SMALL_INTS[(int) number - SMALL_INT_MIN];
+            } else if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                return new Value((int) number);
+            } else if (!HOLDS_LONGS) {
+                return new Value((double) number);
+            }
+            try {
+                return new Value((Object) number);
+            } catch (InstantiationException e) {
+                // checked once by holdsLongs()
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // whether this version of the OpenFeature SDK accepts any Number in a Value, or only integers and doubles
+        private static boolean holdsLongs() {
+            try {
+                return new Value((Object) Long.MAX_VALUE).asObject() instanceof Long;
+            } catch (InstantiationException e) {
+                return false;
+            }
+        }
+
+        private Value read(JsonReader reader) throws IOException {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    return readStructure(reader);
+                case BEGIN_ARRAY:
+                    return readList(reader);
+                case STRING:
+                    String str = reader.nextString();
+                    return str.isEmpty() ? EMPTY_STRING : new Value(str);
+                case NUMBER:
+                    return toNumberValue(reader.nextString());
+                case BOOLEAN:
+                    return reader.nextBoolean() ? TRUE : FALSE;
+                case NULL:
+                    reader.nextNull();
+                    return NULL;
+                default:
+                    throw new JsonSyntaxException("Unexpected json token " + reader.peek());
+            }
+        }
+
+        private Value readStructure(JsonReader reader) throws IOException {
+            reader.beginObject();
+            if (!reader.hasNext()) {
+                reader.endObject();
+                return EMPTY_STRUCTURE;
+            }
+            Map<String, Value> attributes = new HashMap<>();
+            while (reader.hasNext()) {
+                attributes.put(reader.nextName(), read(reader));
+            }
+            reader.endObject();
+            return new Value(new ImmutableStructure(attributes));
+        }
+
+        private Value readList(JsonReader reader) throws IOException {
+            reader.beginArray();
+            if (!reader.hasNext()) {
+                reader.endArray();
+                return EMPTY_LIST;
+            }
+            List<Value> values = new ArrayList<>();
+            while (reader.hasNext()) {
+                values.add(read(reader));
+            }
+            reader.endArray();
+            return new Value(Collections.unmodifiableList(values));
+        }
     }
 
 }
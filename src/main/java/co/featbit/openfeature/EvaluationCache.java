@@ -0,0 +1,162 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import dev.openfeature.sdk.ProviderEvaluation;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizes successful evaluations per flag key, context content and requested type.
+ * <p>
+ * Every evaluation and flag change draws a number from a single sequence: an entry is stale if its flag changed after
+ * its evaluation started. A flag change only records its number, in constant time on the SDK's update thread,
+ * and the stale entries are dropped when they are looked up or evicted. This also prevents an evaluation started
+ * before a change from being cached after it.
+ * <p>
+ * The FeatBit client can't report an insight without evaluating the flag, so the provider only serves a hit whose
+ * insight is deduplicated or sampled out by the {@link InsightFilter}, and evaluates the flag on the client otherwise.
+ * Stale hits and the hits evaluated anyway are counted as misses.
+ */
+final class EvaluationCache {
+    enum Type {
+        BOOLEAN, STRING, INTEGER, DOUBLE,
+        VALUE_STRING, VALUE_BOOLEAN, VALUE_DOUBLE, VALUE_INTEGER, VALUE_LIST, VALUE_STRUCTURE
+    }
+
+    static final class Entry {
+        private final ProviderEvaluation<?> evaluation;
+        private final FBUser user;
+        private final long generation;
+
+        private Entry(ProviderEvaluation<?> evaluation, FBUser user, long generation) {
+            this.evaluation = evaluation;
+            this.user = user;
+            this.generation = generation;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> ProviderEvaluation<T> evaluation() {
+            return (ProviderEvaluation<T>) evaluation;
+        }
+
+        FBUser user() {
+            return user;
+        }
+
+        // the generation observed when the evaluation started
+        long generation() {
+            return generation;
+        }
+    }
+
+    private static final class Key {
+        private final String flagKey;
+        private final ContextKey contextKey;
+        private final Type type;
+        private final int hash;
+
+        private Key(String flagKey, ContextKey contextKey, Type type) {
+            this.flagKey = flagKey;
+            this.contextKey = contextKey;
+            this.type = type;
+            this.hash = Objects.hash(flagKey, contextKey, type);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return type == key.type && flagKey.equals(key.flagKey) && contextKey.equals(key.contextKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final Cache<Key, Entry> cache;
+    private final Set<String> excludedFlags;
+    private final AtomicLong generation = new AtomicLong();
+    // the generation of the last change of each flag, and of the last invalidation of all of them
+    private final ConcurrentMap<String, Long> flagChanges = new ConcurrentHashMap<>();
+    private volatile long allChanged;
+    private final LongAdder staleHits = new LongAdder();
+
+    EvaluationCache(long maximumSize, Duration ttl, Set<String> excludedFlags) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats();
+        if (ttl != null && !ttl.isZero()) {
+            builder.expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        this.cache = builder.build();
+        this.excludedFlags = ImmutableSet.copyOf(excludedFlags);
+    }
+
+    boolean isCacheable(String flagKey) {
+        return !excludedFlags.contains(flagKey);
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    Entry get(String flagKey, ContextKey contextKey, Type type) {
+        Key key = new Key(flagKey, contextKey, type);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.generation < lastChange(flagKey)) {
+            staleHits.increment();
+            cache.invalidate(key);
+            return null;
+        }
+        return entry;
+    }
+
+    void put(String flagKey, ContextKey contextKey, Type type, ProviderEvaluation<?> evaluation, FBUser user, long observedGeneration) {
+        if (observedGeneration < lastChange(flagKey)) {
+            return;
+        }
+        Key key = new Key(flagKey, contextKey, type);
+        cache.put(key, new Entry(evaluation, user, observedGeneration));
+        // the flag may have changed between the check and the put
+        if (observedGeneration < lastChange(flagKey)) {
+            cache.invalidate(key);
+        }
+    }
+
+    void invalidate(String flagKey) {
+        flagChanges.put(flagKey, generation.incrementAndGet());
+    }
+
+    void invalidateAll() {
+        allChanged = generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    // the generation of the last change of a flag, 0 if it never changed
+    long lastChange(String flagKey) {
+        Long flagChanged = flagChanges.get(flagKey);
+        return flagChanged == null ? allChanged : Math.max(flagChanged, allChanged);
+    }
+
+    // a hit that was evaluated anyway, to report its insight
+    void evaluatedHit() {
+        staleHits.increment();
+    }
+
+    CacheStatistics stats() {
+        return CacheStatistics.of(cache.stats(), staleHits.sum(), cache.size());
+    }
+}
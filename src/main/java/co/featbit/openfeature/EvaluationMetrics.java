@@ -0,0 +1,109 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableMap;
+import dev.openfeature.sdk.ErrorCode;
+
+import java.util.Map;
+
+/**
+ * Point-in-time snapshot of the evaluation metrics recorded by the provider hook, by flag key.
+ * The counters are cumulative since the provider was created; a metrics backend computes rates from
+ * successive snapshots.
+ */
+public final class EvaluationMetrics {
+    static final EvaluationMetrics EMPTY = new EvaluationMetrics(ImmutableMap.of(), new FlagMetrics(0L,
+            0L,
+            ImmutableMap.of(),
+            ImmutableMap.of(),
+            new long[LatencyHistogram.BUCKET_COUNT],
+            0L));
+
+    private final Map<String, FlagMetrics> flags;
+    private final FlagMetrics otherFlags;
+
+    EvaluationMetrics(Map<String, FlagMetrics> flags, FlagMetrics otherFlags) {
+        this.flags = flags;
+        this.otherFlags = otherFlags;
+    }
+
+    public Map<String, FlagMetrics> getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return the metrics of the evaluations of all the flag keys recorded beyond the per-flag limit, together
+     */
+    public FlagMetrics getOtherFlags() {
+        return otherFlags;
+    }
+
+    public static final class FlagMetrics {
+        private final long evaluationCount;
+        private final long errorCount;
+        private final Map<String, Long> reasonCounts;
+        private final Map<ErrorCode, Long> errorCodeCounts;
+        private final long[] latencyBucketCounts;
+        private final long totalLatencyNanos;
+
+        FlagMetrics(long evaluationCount,
+                    long errorCount,
+                    Map<String, Long> reasonCounts,
+                    Map<ErrorCode, Long> errorCodeCounts,
+                    long[] latencyBucketCounts,
+                    long totalLatencyNanos) {
+            this.evaluationCount = evaluationCount;
+            this.errorCount = errorCount;
+            this.reasonCounts = reasonCounts;
+            this.errorCodeCounts = errorCodeCounts;
+            this.latencyBucketCounts = latencyBucketCounts;
+            this.totalLatencyNanos = totalLatencyNanos;
+        }
+
+        public long getEvaluationCount() {
+            return evaluationCount;
+        }
+
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        public double getErrorRate() {
+            return evaluationCount == 0 ? 0D : (double) errorCount / evaluationCount;
+        }
+
+        public Map<String, Long> getReasonCounts() {
+            return reasonCounts;
+        }
+
+        public Map<ErrorCode, Long> getErrorCodeCounts() {
+            return errorCodeCounts;
+        }
+
+        /**
+         * @return the number of evaluations per latency bucket, see {@link #getLatencyBucketUpperBoundNanos(int)}
+         */
+        public long[] getLatencyBucketCounts() {
+            return latencyBucketCounts.clone();
+        }
+
+        /**
+         * @param bucket the index of a latency bucket
+         * @return the exclusive upper bound of the bucket in nanoseconds, the bounds are powers of two
+         */
+        public long getLatencyBucketUpperBoundNanos(int bucket) {
+            return LatencyHistogram.bucketUpperBoundNanos(bucket);
+        }
+
+        public long getTotalLatencyNanos() {
+            return totalLatencyNanos;
+        }
+
+        /**
+         * @param percentile a percentile between 0 and 100
+         * @return the upper bound of the latency bucket holding the percentile, in nanoseconds
+         */
+        public long getLatencyPercentileNanos(double percentile) {
+            return LatencyHistogram.percentileNanos(latencyBucketCounts, percentile);
+        }
+    }
+}
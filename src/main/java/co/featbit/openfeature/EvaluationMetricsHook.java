@@ -0,0 +1,166 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableMap;
+import dev.openfeature.sdk.*;
+import dev.openfeature.sdk.exceptions.OpenFeatureError;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records per-flag evaluation counts, reasons, error codes and latencies without locks on the evaluation path.
+ * The latency spans from the before stage to the after or error stage, on the evaluating thread; the start times
+ * are kept in a per-thread stack, so that an evaluation nested in another one, by a hook for instance, doesn't
+ * overwrite the start time of the outer evaluation.
+ * <p>
+ * At most {@link #MAX_FLAGS} flags are recorded one by one, the evaluations of any other flag key are recorded
+ * together, so that evaluating arbitrary unknown keys can't grow the recorders without bound.
+ * The recorder of a flag is dropped when the flag is removed. A recorder holds about 50 {@link LongAdder}s, roughly
+ * 2 KB, and more once its counters are contended, so the recorders of {@link #MAX_FLAGS} flags take about 20 MB.
+ */
+final class EvaluationMetricsHook implements Hook<Object> {
+    static final int MAX_FLAGS = 10_000;
+    private static final String REASON_ERROR = "ERROR";
+    // System.nanoTime() may be negative
+    private static final long NO_START = Long.MIN_VALUE;
+
+    // the start times of the evaluations in progress on a thread, innermost last
+    private static final class StartTimes {
+        private String[] flagKeys = new String[4];
+        private long[] nanos = new long[4];
+        private int depth;
+
+        private void push(String flagKey, long start) {
+            if (depth == flagKeys.length) {
+                flagKeys = Arrays.copyOf(flagKeys, depth * 2);
+                nanos = Arrays.copyOf(nanos, depth * 2);
+            }
+            flagKeys[depth] = flagKey;
+            nanos[depth] = start;
+            depth++;
+        }
+
+        // NO_START if the before stage of the evaluation didn't run, the frames above it are left by evaluations
+        // whose after or error stage didn't run
+        private long pop(String flagKey) {
+            for (int i = depth - 1; i >= 0; i--) {
+                if (flagKeys[i].equals(flagKey)) {
+                    long start = nanos[i];
+                    Arrays.fill(flagKeys, i, depth, null);
+                    depth = i;
+                    return start;
+                }
+            }
+            return NO_START;
+        }
+    }
+
+    private static final class FlagRecorder {
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> reasons = new ConcurrentHashMap<>();
+        private final LongAdder[] errorCodes = new LongAdder[ErrorCode.values().length];
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private FlagRecorder() {
+            for (int i = 0; i < errorCodes.length; i++) {
+                errorCodes[i] = new LongAdder();
+            }
+        }
+
+        private void record(String reason, ErrorCode errorCode, long nanos) {
+            evaluations.increment();
+            if (errorCode != null) {
+                errors.increment();
+                errorCodes[errorCode.ordinal()].increment();
+            }
+            String key = reason == null ? REASON_ERROR : reason;
+            LongAdder counter = reasons.get(key);
+            if (counter == null) {
+                counter = reasons.computeIfAbsent(key, k -> new LongAdder());
+            }
+            counter.increment();
+            if (nanos >= 0) {
+                latencies.record(nanos);
+            }
+        }
+
+        private EvaluationMetrics.FlagMetrics snapshot() {
+            ImmutableMap.Builder<String, Long> reasonCounts = ImmutableMap.builder();
+            reasons.forEach((reason, counter) -> reasonCounts.put(reason, counter.sum()));
+            ImmutableMap.Builder<ErrorCode, Long> errorCodeCounts = ImmutableMap.builder();
+            for (ErrorCode errorCode : ErrorCode.values()) {
+                long count = errorCodes[errorCode.ordinal()].sum();
+                if (count > 0) {
+                    errorCodeCounts.put(errorCode, count);
+                }
+            }
+            return new EvaluationMetrics.FlagMetrics(evaluations.sum(),
+                    errors.sum(),
+                    reasonCounts.build(),
+                    errorCodeCounts.build(),
+                    latencies.bucketCounts(),
+                    latencies.totalNanos());
+        }
+    }
+
+    private final ConcurrentMap<String, FlagRecorder> flags = new ConcurrentHashMap<>();
+    private final FlagRecorder otherFlags = new FlagRecorder();
+    private final int maxFlags;
+    // hooks run on the evaluating thread, the start times never cross threads
+    private final ThreadLocal<StartTimes> startTimes = ThreadLocal.withInitial(StartTimes::new);
+
+    EvaluationMetricsHook() {
+        this(MAX_FLAGS);
+    }
+
+    EvaluationMetricsHook(int maxFlags) {
+        this.maxFlags = maxFlags;
+    }
+
+    @Override
+    public Optional<EvaluationContext> before(HookContext<Object> ctx, Map<String, Object> hints) {
+        startTimes.get().push(ctx.getFlagKey(), System.nanoTime());
+        return Optional.empty();
+    }
+
+    @Override
+    public void after(HookContext<Object> ctx, FlagEvaluationDetails<Object> details, Map<String, Object> hints) {
+        recorder(ctx.getFlagKey()).record(details.getReason(), details.getErrorCode(), elapsedNanos(ctx.getFlagKey()));
+    }
+
+    @Override
+    public void error(HookContext<Object> ctx, Exception error, Map<String, Object> hints) {
+        ErrorCode errorCode = error instanceof OpenFeatureError ? ((OpenFeatureError) error).getErrorCode() : ErrorCode.GENERAL;
+        recorder(ctx.getFlagKey()).record(REASON_ERROR, errorCode, elapsedNanos(ctx.getFlagKey()));
+    }
+
+    EvaluationMetrics snapshot() {
+        ImmutableMap.Builder<String, EvaluationMetrics.FlagMetrics> res = ImmutableMap.builder();
+        flags.forEach((flagKey, recorder) -> res.put(flagKey, recorder.snapshot()));
+        return new EvaluationMetrics(res.build(), otherFlags.snapshot());
+    }
+
+    void flagRemoved(String flagKey) {
+        flags.remove(flagKey);
+    }
+
+    private long elapsedNanos(String flagKey) {
+        long start = startTimes.get().pop(flagKey);
+        return start == NO_START ? -1L : System.nanoTime() - start;
+    }
+
+    private FlagRecorder recorder(String flagKey) {
+        // get first: computeIfAbsent locks the bin even when the key is present
+        FlagRecorder recorder = flags.get(flagKey);
+        if (recorder != null) {
+            return recorder;
+        }
+        // the size is approximate under contention, the cap may be exceeded by a few flags
+        return flags.size() < maxFlags ? flags.computeIfAbsent(flagKey, k -> new FlagRecorder()) : otherFlags;
+    }
+}
@@ -1,18 +1,51 @@
 package co.featbit.openfeature;
 
+import co.featbit.commons.model.AllFlagStates;
 import co.featbit.commons.model.EvalDetail;
+import co.featbit.commons.model.FBUser;
+import co.featbit.server.EvaluationReason;
 import co.featbit.server.FBClientImp;
 import co.featbit.server.FBConfig;
+import co.featbit.server.Factory;
+import co.featbit.server.Status;
+import co.featbit.server.exterior.DataStorageFactory;
 import co.featbit.server.exterior.FBClient;
+import co.featbit.server.exterior.FlagChange;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import dev.openfeature.sdk.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FBProvider extends EventProvider {
+    private static final Logger logger = LoggerFactory.getLogger(FBProvider.class);
+    private static final String OFFLINE_STREAMING_URL = "ws://offline";
+    private static final String OFFLINE_EVENT_URL = "http://offline";
+
     private static final class FBProviderMetaData implements Metadata {
         @Override
         public String getName() {
@@ -25,111 +58,434 @@ public class FBProvider extends EventProvider {
     private final Converter.EvaluationDetailConverter evaluationDetailConverter = Converter.EvaluationDetailConverter.INSTANCE;
     private final Converter.ValueConverter valueConverter = Converter.ValueConverter.INSTANCE;
     private ProviderState currState = ProviderState.NOT_READY;
+    private final String sdkKey;
+    private final FBProviderOptions options;
+    private final SharedClient sharedClient;
     private final FBClient client;
+    private final AtomicReference<Bootstrap> bootstrap = new AtomicReference<>();
+    private final FlagDataStorageFactory flagData;
+    private final FlagSnapshot snapshot;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Status.StateListener stateListener = this::onStateChanged;
+    private final FlagChange.FlagChangeListener flagChangeListener = this::onFlagChanged;
+    private final JsonVariationCache jsonVariationCache = new JsonVariationCache();
+    private final ContextCache contextCache;
+    private final EvaluationCache evaluationCache;
+    private final EvaluationMetricsHook evaluationMetricsHook;
+    private final ConfigurationChangeCoalescer configurationChangeCoalescer;
+    private final ReferencedProperties referencedProperties;
+    private final InsightFilter insightFilter;
+    private final ShadowClient shadowClient;
+    // created by the first tracking event, guarded by trackerLock
+    private final Object trackerLock = new Object();
+    private volatile MetricTracker metricTracker;
+    private final UserIndependentFlags userIndependentFlags;
+    private final FlagFileWatcher flagFileWatcher;
 
     public FBProvider(String sdkKey, FBConfig config) {
-        this.client = new FBClientImp(sdkKey, config);
+        this(sdkKey, config, FBProviderOptions.DEFAULT);
+    }
+
+    public FBProvider(String sdkKey, FBConfig config, FBProviderOptions options) {
+        this(sdkKey, SharedClient.create(sdkKey, config), options, null);
     }
 
+    /**
+     * Builds the FeatBit client from a config builder, which lets the provider observe the flag data itself.
+     * This is required by the options that depend on the flag data, such as writing a flag snapshot.
+     * <p>
+     * The data storage factory of the builder is replaced by the provider's own one, which wraps
+     * {@link FBProviderOptions#getDataStorageFactory()}.
+     *
+     * @param sdkKey        the sdk key of the environment
+     * @param configBuilder the config of the FeatBit client
+     * @param options       the provider options
+     * @see FBProviderRegistry
+     */
+    public FBProvider(String sdkKey, FBConfig.Builder configBuilder, FBProviderOptions options) {
+        this(sdkKey, SharedClient.create(sdkKey, configBuilder, options.getDataStorageFactory()), options, null);
+    }
+
+    // the provider owns the client, and a background executor if none is given
+    FBProvider(String sdkKey, SharedClient sharedClient, FBProviderOptions options, ScheduledExecutorService executor) {
+        this.sdkKey = sdkKey;
+        this.options = options;
+        this.sharedClient = sharedClient;
+        this.client = sharedClient.client();
+        this.flagData = sharedClient.flagData();
+        this.ownsExecutor = executor == null;
+        this.executor = executor != null ? executor : Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("featbit-provider-background")
+                .build());
+        if (options.getSnapshotFile() != null && flagData != null) {
+            this.snapshot = new FlagSnapshot(options.getSnapshotFile(), this.executor);
+            flagData.addListener(snapshot);
+            // the client may already be synchronized
+            snapshot.accept(flagData.current());
+        } else {
+            if (options.getSnapshotFile() != null) {
+                logger.warn("FB JAVA PROVIDER: the flag snapshot is only written by a provider built from a FBConfig.Builder");
+            }
+            this.snapshot = null;
+        }
+        this.contextCache = options.getContextCacheSize() > 0 ? new ContextCache(options.getContextCacheSize()) : null;
+        if (options.isAttributeProjection() && flagData != null) {
+            this.referencedProperties = new ReferencedProperties(() -> {
+                if (contextCache != null) {
+                    contextCache.invalidateAll();
+                }
+            });
+            flagData.addListener(referencedProperties);
+            referencedProperties.accept(flagData.current());
+        } else {
+            if (options.isAttributeProjection()) {
+                logger.warn("FB JAVA PROVIDER: the attribute projection only works with a provider built from a FBConfig.Builder");
+            }
+            this.referencedProperties = null;
+        }
+        if (options.isInsightFiltering() && flagData != null) {
+            this.insightFilter = new InsightFilter(options.getInsightDeduplicationWindow(),
+                    options.getInsightDeduplicationCapacity(),
+                    options.getInsightSamplingRate(),
+                    options.getInsightSamplingRates());
+            this.shadowClient = new ShadowClient(flagData, this::newOfflineClient, FBProvider::closeQuietly);
+        } else {
+            if (options.isInsightFiltering()) {
+                logger.warn("FB JAVA PROVIDER: the insight deduplication and sampling only work with a provider built from a FBConfig.Builder");
+            }
+            this.insightFilter = null;
+            this.shadowClient = null;
+        }
+        // the FeatBit client can't report an insight without evaluating the flag, a hit is only served if its
+        // insight is filtered out
+        if (options.getEvaluationCacheSize() > 0 && insightFilter != null) {
+            this.evaluationCache = new EvaluationCache(options.getEvaluationCacheSize(), options.getEvaluationCacheTtl(), options.getEvaluationCacheExcludedFlags());
+        } else {
+            if (options.getEvaluationCacheSize() > 0) {
+                logger.warn("FB JAVA PROVIDER: the evaluation cache only works with the insight deduplication or sampling");
+            }
+            this.evaluationCache = null;
+        }
+        // likewise, a precomputed evaluation is only served if its insight is filtered out
+        if (options.isUserIndependentFlags() && insightFilter != null) {
+            this.userIndependentFlags = new UserIndependentFlags();
+            flagData.addUpdateListener(userIndependentFlags);
+        } else {
+            if (options.isUserIndependentFlags()) {
+                logger.warn("FB JAVA PROVIDER: the user-independent flags only work with the insight deduplication or sampling");
+            }
+            this.userIndependentFlags = null;
+        }
+        this.evaluationMetricsHook = options.isEvaluationMetrics() ? new EvaluationMetricsHook() : null;
+        if (options.getConfigurationChangeWindow().isZero()) {
+            this.configurationChangeCoalescer = null;
+        } else {
+            this.configurationChangeCoalescer = new ConfigurationChangeCoalescer(this.executor,
+                    options.getConfigurationChangeWindow(),
+                    options.getConfigurationChangeMaxBatchSize(),
+                    this::emitConfigurationChanged);
+        }
+        this.flagFileWatcher = options.getOfflineDataDirectory() == null
+                ? null
+                : new FlagFileWatcher(options.getOfflineDataDirectory(), client, flagData, this::onFlagsUpserted);
+    }
 
     @Override
     public Metadata getMetadata() {
         return metadata;
     }
 
+    // raw as declared by FeatureProvider
+    @SuppressWarnings("rawtypes")
+    @Override
+    public List<Hook> getProviderHooks() {
+        if (evaluationMetricsHook == null) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.<Hook>of(evaluationMetricsHook);
+    }
+
     @Override
     public ProviderEvaluation<Boolean> getBooleanEvaluation(String flagKey, Boolean defaultValue, EvaluationContext ctx) {
-        return evaluationDetailConverter.toProviderEvaluation(client.boolVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), defaultValue));
+        return evaluate(flagKey, EvaluationCache.Type.BOOLEAN, ctx, (evalClient, user) ->
+                evaluationDetailConverter.toProviderEvaluation(evalClient.boolVariationDetail(flagKey, user, defaultValue)));
     }
 
     @Override
     public ProviderEvaluation<String> getStringEvaluation(String flagKey, String defaultValue, EvaluationContext ctx) {
-        return evaluationDetailConverter.toProviderEvaluation(client.variationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), defaultValue));
+        return evaluate(flagKey, EvaluationCache.Type.STRING, ctx, (evalClient, user) ->
+                evaluationDetailConverter.toProviderEvaluation(evalClient.variationDetail(flagKey, user, defaultValue)));
     }
 
     @Override
     public ProviderEvaluation<Integer> getIntegerEvaluation(String flagKey, Integer defaultValue, EvaluationContext ctx) {
-        return evaluationDetailConverter.toProviderEvaluation(client.intVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), defaultValue));
+        return evaluate(flagKey, EvaluationCache.Type.INTEGER, ctx, (evalClient, user) ->
+                evaluationDetailConverter.toProviderEvaluation(evalClient.intVariationDetail(flagKey, user, defaultValue)));
     }
 
     @Override
     public ProviderEvaluation<Double> getDoubleEvaluation(String flagKey, Double defaultValue, EvaluationContext ctx) {
-        return evaluationDetailConverter.toProviderEvaluation(client.doubleVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), defaultValue));
+        return evaluate(flagKey, EvaluationCache.Type.DOUBLE, ctx, (evalClient, user) ->
+                evaluationDetailConverter.toProviderEvaluation(evalClient.doubleVariationDetail(flagKey, user, defaultValue)));
     }
 
     @Override
     public ProviderEvaluation<Value> getObjectEvaluation(String flagKey, Value defaultValue, EvaluationContext ctx) {
         if (defaultValue == null || defaultValue.isNull() || defaultValue.isString()) {
             String dv = defaultValue == null || defaultValue.isNull() ? null : defaultValue.asString();
-            EvalDetail<String> res = client.variationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), dv);
-            return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            return evaluate(flagKey, EvaluationCache.Type.VALUE_STRING, ctx, (evalClient, user) -> {
+                EvalDetail<String> res = evalClient.variationDetail(flagKey, user, dv);
+                return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            });
         } else if (defaultValue.isBoolean()) {
-            EvalDetail<Boolean> res = client.boolVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), defaultValue.asBoolean());
-            return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            return evaluate(flagKey, EvaluationCache.Type.VALUE_BOOLEAN, ctx, (evalClient, user) -> {
+                EvalDetail<Boolean> res = evalClient.boolVariationDetail(flagKey, user, defaultValue.asBoolean());
+                return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            });
         } else if (defaultValue.asObject() instanceof Double) {
-            EvalDetail<Double> res = client.doubleVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), defaultValue.asDouble());
-            return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            return evaluate(flagKey, EvaluationCache.Type.VALUE_DOUBLE, ctx, (evalClient, user) -> {
+                EvalDetail<Double> res = evalClient.doubleVariationDetail(flagKey, user, defaultValue.asDouble());
+                return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            });
         } else if (defaultValue.asObject() instanceof Integer) {
-            EvalDetail<Integer> res = client.intVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), defaultValue.asInteger());
-            return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            return evaluate(flagKey, EvaluationCache.Type.VALUE_INTEGER, ctx, (evalClient, user) -> {
+                EvalDetail<Integer> res = evalClient.intVariationDetail(flagKey, user, defaultValue.asInteger());
+                return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(res.getVariation()), res));
+            });
         } else if (defaultValue.isList()) {
-            EvalDetail<List> res = client.jsonVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), List.class, null);
-            return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(valueConverter.toValue(res.getVariation()), res));
+            return evaluate(flagKey, EvaluationCache.Type.VALUE_LIST, ctx, (evalClient, user) ->
+                    toJsonEvaluation(flagKey, evalClient.variationDetail(flagKey, user, null), true));
         } else if (defaultValue.isStructure()) {
-            EvalDetail<Map> res = client.jsonVariationDetail(flagKey, evaluationContextConverter.toFBUser(ctx), Map.class, null);
-            return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(valueConverter.toValue(res.getVariation()), res));
+            return evaluate(flagKey, EvaluationCache.Type.VALUE_STRUCTURE, ctx, (evalClient, user) ->
+                    toJsonEvaluation(flagKey, evalClient.variationDetail(flagKey, user, null), false));
         } else {
             throw new IllegalArgumentException("Unsupported default value type");
         }
     }
 
+    /**
+     * Evaluates all the flags for a context, converting the context only once.
+     * <p>
+     * The values are typed with the variation type of their flag: boolean, number, json or string. The variation
+     * types are only known to a provider built from a {@code FBConfig.Builder}, the values are strings otherwise.
+     *
+     * @param ctx the evaluation context
+     * @return the evaluations by flag key
+     */
+    public Map<String, ProviderEvaluation<Value>> evaluateAll(EvaluationContext ctx) {
+        FBUser user = toFBUser(ctx);
+        AllFlagStates states = onEvaluationClient(evalClient -> evalClient.getAllLatestFlagsVariations(user));
+        Collection<String> flagKeys = states.getFlagKeys();
+        Map<String, ProviderEvaluation<Value>> res = new LinkedHashMap<>((int) (flagKeys.size() / 0.75f) + 1);
+        for (String flagKey : flagKeys) {
+            res.put(flagKey, toValueEvaluation(flagKey, states.getStringDetail(flagKey, null)));
+        }
+        return Collections.unmodifiableMap(res);
+    }
+
+    /**
+     * Evaluates the given flags for a context, converting the context only once.
+     * Unknown flags are returned with a {@link ErrorCode#FLAG_NOT_FOUND} error code.
+     *
+     * @param ctx      the evaluation context
+     * @param flagKeys the keys of the flags to evaluate
+     * @return the evaluations by flag key
+     * @see #evaluateAll(EvaluationContext)
+     */
+    public Map<String, ProviderEvaluation<Value>> evaluateAll(EvaluationContext ctx, Set<String> flagKeys) {
+        FBUser user = toFBUser(ctx);
+        return onEvaluationClient(evalClient -> evaluateAll(evalClient, user, flagKeys));
+    }
+
+    /**
+     * Evaluates the given flags for a large number of contexts in parallel, for batch jobs.
+     * <p>
+     * The contexts are read lazily, at most {@link CohortOptions#getMaxInFlight()} ahead of the consumer of the
+     * results, which come in the order of the contexts. Contexts without a valid targeting key get
+     * {@link ErrorCode#TARGETING_KEY_MISSING} evaluations. The returned stream should be closed if it is not
+     * consumed entirely, to stop its threads:
+     * <pre>{@code
+     * try (Stream<CohortEvaluation> results = provider.evaluateCohort(contexts, flagKeys, options)) {
+     *     results.forEach(exporter::write);
+     * }
+     * }</pre>
+     *
+     * @param contexts the contexts of the cohort
+     * @param flagKeys the keys of the flags to evaluate
+     * @param options  the options of the run
+     * @return the evaluations of each context
+     */
+    public Stream<CohortEvaluation> evaluateCohort(Iterator<? extends EvaluationContext> contexts,
+                                                   Set<String> flagKeys,
+                                                   CohortOptions options) {
+        FBClient cohortClient;
+        Runnable onClose;
+        if (options.isSendInsights()) {
+            Bootstrap bootstrapped = bootstrap.get();
+            if (bootstrapped != null && bootstrapped.acquire()) {
+                // the snapshot client is kept open until the run is closed
+                cohortClient = bootstrapped.client;
+                onClose = bootstrapped::release;
+            } else {
+                cohortClient = client;
+                onClose = () -> {
+                };
+            }
+        } else {
+            // offline clients don't send any events
+            if (flagData == null) {
+                throw new IllegalStateException("Evaluating a cohort without insights requires a provider built from a FBConfig.Builder");
+            }
+            // follows the live client's storage, without copying the flags to the wire format
+            ShadowClient offlineClient = new ShadowClient(flagData, this::newOfflineClient, FBProvider::closeQuietly);
+            cohortClient = offlineClient.get();
+            if (cohortClient == null) {
+                offlineClient.close();
+                throw new IllegalStateException("The flags are not synchronized yet");
+            }
+            onClose = offlineClient::close;
+        }
+        Set<String> keys = ImmutableSet.copyOf(flagKeys);
+        Set<String> properties = referencedProperties == null ? null : referencedProperties.get();
+        CohortIterator iterator = new CohortIterator(contexts, ctx -> {
+            FBUser user;
+            try {
+                // the context cache would only thrash on a cohort
+                user = evaluationContextConverter.toFBUser(ctx, properties);
+            } catch (IllegalArgumentException e) {
+                return new CohortEvaluation(ctx, invalidContextEvaluations(keys, e.getMessage()));
+            }
+            return new CohortEvaluation(ctx, evaluateAll(cohortClient, user, keys));
+        }, options, onClose);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    public Stream<CohortEvaluation> evaluateCohort(Iterator<? extends EvaluationContext> contexts, Set<String> flagKeys) {
+        return evaluateCohort(contexts, flagKeys, CohortOptions.DEFAULT);
+    }
+
+    /**
+     * Sends a tracking event to FeatBit as a custom metric named after the event, with the value of the details
+     * if any. The event is queued and sent from a background thread, see
+     * {@link FBProviderOptions.Builder#trackingBackpressure(TrackingBackpressure)} for a full queue and
+     * {@link #getTrackingStatistics()} for the events that were not sent. Note that {@code FBClient#trackMetric}
+     * already queues the event to send it asynchronously; the queue of the provider bounds the events waiting for it.
+     * Events of contexts without a valid targeting key are dropped.
+     *
+     * @param eventName the name of the event
+     * @param ctx       the evaluation context
+     * @param details   the details of the event, only the value is sent
+     */
+    @Override
+    public void track(String eventName, EvaluationContext ctx, TrackingEventDetails details) {
+        FBUser user;
+        try {
+            user = toFBUser(ctx);
+        } catch (IllegalArgumentException e) {
+            logger.debug("FB JAVA PROVIDER: dropped the tracking event {}: {}", eventName, e.getMessage());
+            return;
+        }
+        Number value = details == null ? null : details.getValue().orElse(null);
+        MetricTracker tracker = metricTracker();
+        if (tracker == null) {
+            logger.debug("FB JAVA PROVIDER: dropped the tracking event {}: the provider is shut down", eventName);
+            return;
+        }
+        tracker.track(user, eventName, value == null ? null : value.doubleValue());
+    }
+
     @Override
     public void initialize(EvaluationContext evaluationContext) throws Exception {
-        client.getDataUpdateStatusProvider().addStateListener(state -> {
-            switch (state.getStateType()) {
-                case INITIALIZING:
-                    currState = ProviderState.NOT_READY;
-                    break;
-                case INTERRUPTED:
-                    currState = ProviderState.ERROR;
-                    String message = state.getErrorTrack() == null ? " Unknown Error" : state.getErrorTrack().getMessage();
-                    emitProviderError(ProviderEventDetails.builder().message(message).build());
-                    break;
-                case OK:
-                    if (currState != ProviderState.READY) {
-                        currState = ProviderState.READY;
-                        emitProviderReady(ProviderEventDetails.builder().message("FeatBit provider is ready").build());
-                    }
-                    break;
-                case OFF:
-                    currState = ProviderState.STALE;
-                    emitProviderStale(ProviderEventDetails.builder().message("FeatBit provider is OFF").build());
-                    break;
-            }
-        });
-        client.getFlagTracker().addFlagChangeListener(event -> {
-            emitProviderConfigurationChanged(ProviderEventDetails.builder().flagsChanged(ImmutableList.of(event.getKey())).build());
-        });
+        client.getDataUpdateStatusProvider().addStateListener(stateListener);
+        client.getFlagTracker().addFlagChangeListener(flagChangeListener);
+        if (flagFileWatcher != null) {
+            // the flags of the directory are loaded before the provider is ready
+            flagFileWatcher.start();
+        }
         if (client.isInitialized()) {
             currState = ProviderState.READY;
             return;
         }
-        // Wait for the client to be ready within 3 minutes
-        if (!client.getDataUpdateStatusProvider().waitForOKState(Duration.ofMinutes(3))) {
+        // serve the snapshot until the first sync completes
+        if (bootstrapFromSnapshot()) {
+            currState = ProviderState.READY;
+            return;
+        }
+        // Wait for the client to be ready within the start wait time
+        Duration startWaitTime = options.getStartWaitTime();
+        if (!client.getDataUpdateStatusProvider().waitForOKState(startWaitTime)) {
             // throw an exception for the OpenFeature SDK, which will handle this error
-            throw new RuntimeException("Failed to initialize FeatBit Java SDK within 3 minutes");
+            throw new RuntimeException("Failed to initialize FeatBit Java SDK within " + startWaitTime);
         }
     }
 
+    /**
+     * Shuts the provider down and closes its FeatBit client.
+     */
     @Override
     public void shutdown() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        client.getDataUpdateStatusProvider().removeStateListener(stateListener);
+        client.getFlagTracker().removeFlagChangeListener(flagChangeListener);
+        if (flagFileWatcher != null) {
+            try {
+                flagFileWatcher.close();
+            } catch (IOException e) {
+                logger.warn("FB JAVA PROVIDER: failed to stop watching {}", options.getOfflineDataDirectory(), e);
+            }
+        }
+        // before the client is closed, which sends its own pending events
+        MetricTracker tracker;
+        synchronized (trackerLock) {
+            tracker = metricTracker;
+        }
+        if (tracker != null) {
+            tracker.close(options.getTrackingFlushTimeout());
+        }
+        if (snapshot != null) {
+            flagData.removeListener(snapshot);
+        }
+        if (referencedProperties != null) {
+            flagData.removeListener(referencedProperties);
+        }
+        if (userIndependentFlags != null) {
+            flagData.removeUpdateListener(userIndependentFlags);
+        }
+        if (shadowClient != null) {
+            shadowClient.close();
+        }
+        Bootstrap bootstrapped = bootstrap.getAndSet(null);
+        if (bootstrapped != null) {
+            bootstrapped.release();
+        }
+        if (ownsExecutor) {
+            // let the pending snapshot write complete
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         try {
-            client.close();
+            sharedClient.release();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    boolean isShutdown() {
+        return closed.get();
+    }
+
+    // deprecated by the OpenFeature SDK, which tracks the state itself, still the state of the FeatBit client
+    @SuppressWarnings("deprecation")
     @Override
     public ProviderState getState() {
         return currState;
@@ -139,4 +495,388 @@ public class FBProvider extends EventProvider {
         return client;
     }
 
+    public CacheStatistics getContextCacheStatistics() {
+        return contextCache == null ? CacheStatistics.EMPTY : contextCache.stats();
+    }
+
+    public EvaluationMetrics getEvaluationMetrics() {
+        return evaluationMetricsHook == null ? EvaluationMetrics.EMPTY : evaluationMetricsHook.snapshot();
+    }
+
+    public CacheStatistics getEvaluationCacheStatistics() {
+        return evaluationCache == null ? CacheStatistics.EMPTY : evaluationCache.stats();
+    }
+
+    public InsightStatistics getInsightStatistics() {
+        return insightFilter == null ? InsightStatistics.EMPTY : insightFilter.stats();
+    }
+
+    public TrackingStatistics getTrackingStatistics() {
+        MetricTracker tracker = metricTracker;
+        return tracker == null ? TrackingStatistics.EMPTY : tracker.stats();
+    }
+
+    // null once the provider is shut down, if no event was tracked before
+    private MetricTracker metricTracker() {
+        MetricTracker res = metricTracker;
+        if (res != null) {
+            return res;
+        }
+        synchronized (trackerLock) {
+            if (metricTracker == null && !closed.get()) {
+                metricTracker = new MetricTracker(client,
+                        executor,
+                        options.getTrackingQueueCapacity(),
+                        options.getTrackingBackpressure(),
+                        options.getTrackingBlockTimeout());
+            }
+            return metricTracker;
+        }
+    }
+
+    private void onStateChanged(Status.State state) {
+        switch (state.getStateType()) {
+            case INITIALIZING:
+                currState = ProviderState.NOT_READY;
+                if (evaluationCache != null) {
+                    evaluationCache.invalidateAll();
+                }
+                break;
+            case INTERRUPTED:
+                if (evaluationCache != null) {
+                    evaluationCache.invalidateAll();
+                }
+                currState = ProviderState.ERROR;
+                String message = state.getErrorTrack() == null ? " Unknown Error" : state.getErrorTrack().getMessage();
+                emitProviderError(ProviderEventDetails.builder().message(message).build());
+                break;
+            case OK:
+                releaseBootstrap();
+                if (currState != ProviderState.READY) {
+                    currState = ProviderState.READY;
+                    emitProviderReady(ProviderEventDetails.builder().message("FeatBit provider is ready").build());
+                }
+                break;
+            case OFF:
+                currState = ProviderState.STALE;
+                emitProviderStale(ProviderEventDetails.builder().message("FeatBit provider is OFF").build());
+                break;
+        }
+    }
+
+    private void onFlagChanged(FlagChange.FlagChangeEvent event) {
+        invalidate(event.getKey());
+        flagsChanged(ImmutableList.of(event.getKey()));
+    }
+
+    // the flags upserted by the file watcher, the SDK fires no change event for them
+    private void onFlagsUpserted(Collection<String> flagKeys) {
+        flagKeys.forEach(this::invalidate);
+        flagsChanged(ImmutableList.copyOf(flagKeys));
+    }
+
+    // drops the state derived from the previous flag
+    private void invalidate(String flagKey) {
+        jsonVariationCache.invalidate(flagKey);
+        if (evaluationCache != null) {
+            evaluationCache.invalidate(flagKey);
+        }
+        if (evaluationMetricsHook != null && !client.isFlagKnown(flagKey)) {
+            evaluationMetricsHook.flagRemoved(flagKey);
+        }
+    }
+
+    private void flagsChanged(List<String> flagKeys) {
+        if (configurationChangeCoalescer != null) {
+            flagKeys.forEach(configurationChangeCoalescer::flagChanged);
+        } else {
+            emitConfigurationChanged(flagKeys);
+        }
+    }
+
+    private void emitConfigurationChanged(List<String> flagKeys) {
+        // a coalesced batch may come after the shutdown
+        if (closed.get()) {
+            return;
+        }
+        emitProviderConfigurationChanged(ProviderEventDetails.builder().flagsChanged(flagKeys).build());
+    }
+
+    // the snapshot client until the live client is synchronized, it is not closed while the function runs
+    private <R> R onEvaluationClient(Function<FBClient, R> function) {
+        Bootstrap bootstrapped = bootstrap.get();
+        if (bootstrapped == null || !bootstrapped.acquire()) {
+            return function.apply(client);
+        }
+        try {
+            return function.apply(bootstrapped.client);
+        } finally {
+            bootstrapped.release();
+        }
+    }
+
+    private boolean bootstrapFromSnapshot() {
+        Path file = options.getSnapshotFile();
+        if (file == null) {
+            return false;
+        }
+        try {
+            String json = FlagSnapshot.read(file);
+            if (json == null) {
+                return false;
+            }
+            FBClient bootstrapClient = newOfflineClient(json);
+            if (bootstrapClient == null) {
+                logger.warn("FB JAVA PROVIDER: invalid flag snapshot {}", file);
+                return false;
+            }
+            FlagDataSet data = FlagDataSet.parse(json);
+            if (referencedProperties != null) {
+                referencedProperties.accept(data);
+            }
+            bootstrap.set(new Bootstrap(bootstrapClient, data));
+            logger.info("FB JAVA PROVIDER: serving the flag snapshot {} until the first sync completes", file);
+        } catch (Exception e) {
+            logger.warn("FB JAVA PROVIDER: failed to read the flag snapshot {}", file, e);
+            return false;
+        }
+        // the first sync may have completed in the meantime
+        if (client.isInitialized()) {
+            releaseBootstrap();
+        }
+        return true;
+    }
+
+    // an offline client seeded with a data-sync document, null if the document is invalid
+    private FBClient newOfflineClient(String json) {
+        FBClient offlineClient = newOfflineClient(Factory.inMemoryDataStorageFactory());
+        if (!offlineClient.initializeFromExternalJson(json)) {
+            closeQuietly(offlineClient);
+            return null;
+        }
+        return offlineClient;
+    }
+
+    // an offline client on the given data storage, which sends no events
+    private FBClient newOfflineClient(DataStorageFactory dataStorage) {
+        FBConfig offline = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL(OFFLINE_STREAMING_URL)
+                .eventURL(OFFLINE_EVENT_URL)
+                .dataStorageFactory(dataStorage)
+                .build();
+        return new FBClientImp(sdkKey, offline);
+    }
+
+    private static void closeQuietly(FBClient offlineClient) {
+        try {
+            offlineClient.close();
+        } catch (IOException e) {
+            logger.warn("FB JAVA PROVIDER: failed to close an offline client", e);
+        }
+    }
+
+    private void releaseBootstrap() {
+        Bootstrap bootstrapped = bootstrap.getAndSet(null);
+        if (bootstrapped == null) {
+            return;
+        }
+        if (evaluationCache != null) {
+            evaluationCache.invalidateAll();
+        }
+        if (referencedProperties != null) {
+            referencedProperties.accept(flagData.current());
+        }
+        // closed once the evaluations in progress on the snapshot client complete
+        bootstrapped.release();
+        // the live flags may differ from the snapshot
+        flagsChanged(ImmutableList.copyOf(bootstrapped.data.getFlags().keySet()));
+    }
+
+    private Map<String, ProviderEvaluation<Value>> evaluateAll(FBClient client, FBUser user, Set<String> flagKeys) {
+        Map<String, ProviderEvaluation<Value>> res = new LinkedHashMap<>((int) (flagKeys.size() / 0.75f) + 1);
+        for (String flagKey : flagKeys) {
+            res.put(flagKey, toValueEvaluation(flagKey, client.variationDetail(flagKey, user, null)));
+        }
+        return Collections.unmodifiableMap(res);
+    }
+
+    private static Map<String, ProviderEvaluation<Value>> invalidContextEvaluations(Set<String> flagKeys, String message) {
+        Map<String, ProviderEvaluation<Value>> res = new LinkedHashMap<>((int) (flagKeys.size() / 0.75f) + 1);
+        for (String flagKey : flagKeys) {
+            // an evaluation is mutable, each flag gets its own
+            res.put(flagKey, ProviderEvaluation.<Value>builder()
+                    .value(new Value())
+                    .reason(EvaluationReason.REASON_USER_NOT_SPECIFIED)
+                    .errorCode(ErrorCode.TARGETING_KEY_MISSING)
+                    .errorMessage(message)
+                    .build());
+        }
+        return Collections.unmodifiableMap(res);
+    }
+
+    private <T> ProviderEvaluation<T> evaluate(String flagKey,
+                                               EvaluationCache.Type type,
+                                               EvaluationContext ctx,
+                                               BiFunction<FBClient, FBUser, ProviderEvaluation<T>> evaluation) {
+        // the snapshot flags are not classified
+        if (userIndependentFlags != null && ctx != null && bootstrap.get() == null) {
+            UserIndependentFlags.Entry entry = userIndependentFlags.get(flagKey);
+            if (entry != null) {
+                return evaluateUserIndependent(flagKey, type, ctx, entry, evaluation);
+            }
+        }
+        if (evaluationCache == null || ctx == null || !evaluationCache.isCacheable(flagKey)) {
+            return evaluate(flagKey, toFBUser(ctx), evaluation);
+        }
+        ContextKey contextKey = ContextKey.of(ctx);
+        EvaluationCache.Entry cached = evaluationCache.get(flagKey, contextKey, type);
+        if (cached != null) {
+            ProviderEvaluation<T> res = cached.evaluation();
+            // the evaluations of the snapshot are not reported anyway
+            if (bootstrap.get() != null || !insightFilter.shouldSend(flagKey, cached.user().getKey(), res.getValue())) {
+                return evaluationDetailConverter.copy(res);
+            }
+            // reported by evaluating the flag on the client
+            evaluationCache.evaluatedHit();
+            return evaluation.apply(client, cached.user());
+        }
+        long generation = evaluationCache.generation();
+        FBUser user = toFBUser(ctx, contextKey);
+        ProviderEvaluation<T> res = evaluate(flagKey, user, evaluation);
+        // errors depend on the default value and must not be cached
+        if (res.getErrorCode() == null) {
+            evaluationCache.put(flagKey, contextKey, type, evaluationDetailConverter.copy(res), user, generation);
+        }
+        return res;
+    }
+
+    private <T> ProviderEvaluation<T> evaluateUserIndependent(String flagKey,
+                                                              EvaluationCache.Type type,
+                                                              EvaluationContext ctx,
+                                                              UserIndependentFlags.Entry entry,
+                                                              BiFunction<FBClient, FBUser, ProviderEvaluation<T>> evaluation) {
+        ProviderEvaluation<T> res = entry.get(type);
+        if (res == null) {
+            // the full user, the flag may change while it is evaluated
+            res = evaluate(flagKey, toFBUser(ctx), evaluation);
+            // errors depend on the default value
+            if (res.getErrorCode() == null) {
+                entry.put(type, evaluationDetailConverter.copy(res));
+            }
+            return res;
+        }
+        FBUser user = toFBUser(ctx);
+        if (!insightFilter.shouldSend(flagKey, user.getKey(), res.getValue())) {
+            return evaluationDetailConverter.copy(res);
+        }
+        // reported by evaluating the flag for the full user on the client
+        return evaluation.apply(client, user);
+    }
+
+    private <T> ProviderEvaluation<T> evaluate(String flagKey,
+                                               FBUser user,
+                                               BiFunction<FBClient, FBUser, ProviderEvaluation<T>> evaluation) {
+        Bootstrap bootstrapped = bootstrap.get();
+        if (bootstrapped != null && bootstrapped.acquire()) {
+            // the evaluations of the snapshot are not reported anyway
+            try {
+                return evaluation.apply(bootstrapped.client, user);
+            } finally {
+                bootstrapped.release();
+            }
+        }
+        if (insightFilter == null) {
+            return evaluation.apply(client, user);
+        }
+        FBClient shadow = shadowClient.get();
+        if (shadow == null) {
+            insightFilter.sent(flagKey);
+            return evaluation.apply(client, user);
+        }
+        // only the live client reports the evaluation to FeatBit insights: a user not seen within the window is
+        // sampled before evaluating, so the flag is evaluated once, on the client matching the decision
+        if (!insightFilter.isSeen(flagKey, user.getKey())) {
+            boolean send = insightFilter.sample(flagKey);
+            ProviderEvaluation<T> res = evaluation.apply(send ? client : shadow, user);
+            insightFilter.record(flagKey, user.getKey(), res.getValue(), send);
+            return res;
+        }
+        ProviderEvaluation<T> res = evaluation.apply(shadow, user);
+        // evaluated twice only when the user gets another variation within the window
+        if (insightFilter.shouldSend(flagKey, user.getKey(), res.getValue())) {
+            return evaluation.apply(client, user);
+        }
+        return res;
+    }
+
+    private ProviderEvaluation<Value> toJsonEvaluation(String flagKey, EvalDetail<String> res, boolean isList) {
+        if (res.getVariation() == null) {
+            return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(new Value(), res));
+        }
+        Value value = jsonVariationCache.get(flagKey, res.getVariation());
+        if (value == null || (isList ? !value.isList() : !value.isStructure())) {
+            return ProviderEvaluation.<Value>builder()
+                    .value(new Value())
+                    .reason(EvaluationReason.REASON_WRONG_TYPE)
+                    .errorCode(ErrorCode.TYPE_MISMATCH)
+                    .errorMessage("The variation of flag " + flagKey + " is not a json " + (isList ? "list." : "structure."))
+                    .build();
+        }
+        return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(value, res));
+    }
+
+    private ProviderEvaluation<Value> toValueEvaluation(String flagKey, EvalDetail<String> res) {
+        Value value = valueConverter.fromVariation(res.getVariation(), variationType(flagKey));
+        return evaluationDetailConverter.toProviderEvaluation(EvalDetail.of(value, res));
+    }
+
+    // null if the flag or its data is unknown
+    private String variationType(String flagKey) {
+        Bootstrap bootstrapped = bootstrap.get();
+        if (bootstrapped != null) {
+            return bootstrapped.data.variationType(flagKey);
+        }
+        return flagData == null ? null : flagData.variationType(flagKey);
+    }
+
+    private FBUser toFBUser(EvaluationContext ctx) {
+        Set<String> properties = referencedProperties == null ? null : referencedProperties.get();
+        return contextCache == null ? evaluationContextConverter.toFBUser(ctx, properties) : contextCache.toFBUser(ctx, properties);
+    }
+
+    private FBUser toFBUser(EvaluationContext ctx, ContextKey contextKey) {
+        Set<String> properties = referencedProperties == null ? null : referencedProperties.get();
+        return contextCache == null ? evaluationContextConverter.toFBUser(ctx, properties) : contextCache.toFBUser(ctx, contextKey, properties);
+    }
+
+    // an offline client serving the flag snapshot until the first sync of the live client completes
+    private static final class Bootstrap {
+        private final FBClient client;
+        private final FlagDataSet data;
+        // the provider's reference and one per evaluation in progress, the client is closed when none is left
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Bootstrap(FBClient client, FlagDataSet data) {
+            this.client = client;
+            this.data = data;
+        }
+
+        // false once the client is closed
+        private boolean acquire() {
+            for (int count = references.get(); count > 0; count = references.get()) {
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                closeQuietly(client);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,531 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.exterior.DataStorageFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Provider-level options of {@link FBProvider}, on top of the {@code FBConfig} of the underlying FeatBit client.
+ * <p>
+ * All the optional features are disabled by default.
+ * <pre>{@code
+ * FBProviderOptions options = new FBProviderOptions.Builder()
+ *         .contextCacheSize(10_000)
+ *         .build();
+ * }</pre>
+ */
+public final class FBProviderOptions {
+    static final FBProviderOptions DEFAULT = new Builder().build();
+
+    private final long contextCacheSize;
+    private final long evaluationCacheSize;
+    private final Duration evaluationCacheTtl;
+    private final Set<String> evaluationCacheExcludedFlags;
+    private final boolean evaluationMetrics;
+    private final Duration startWaitTime;
+    private final Path snapshotFile;
+    private final Duration configurationChangeWindow;
+    private final int configurationChangeMaxBatchSize;
+    private final boolean attributeProjection;
+    private final Duration insightDeduplicationWindow;
+    private final int insightDeduplicationCapacity;
+    private final double insightSamplingRate;
+    private final Map<String, Double> insightSamplingRates;
+    private final DataStorageFactory dataStorageFactory;
+    private final int trackingQueueCapacity;
+    private final TrackingBackpressure trackingBackpressure;
+    private final Duration trackingBlockTimeout;
+    private final Duration trackingFlushTimeout;
+    private final boolean userIndependentFlags;
+    private final Path offlineDataDirectory;
+
+    private FBProviderOptions(Builder builder) {
+        this.contextCacheSize = builder.contextCacheSize;
+        this.evaluationCacheSize = builder.evaluationCacheSize;
+        this.evaluationCacheTtl = builder.evaluationCacheTtl;
+        this.evaluationCacheExcludedFlags = ImmutableSet.copyOf(builder.evaluationCacheExcludedFlags);
+        this.evaluationMetrics = builder.evaluationMetrics;
+        this.startWaitTime = builder.startWaitTime;
+        this.snapshotFile = builder.snapshotFile;
+        this.configurationChangeWindow = builder.configurationChangeWindow;
+        this.configurationChangeMaxBatchSize = builder.configurationChangeMaxBatchSize;
+        this.attributeProjection = builder.attributeProjection;
+        this.insightDeduplicationWindow = builder.insightDeduplicationWindow;
+        this.insightDeduplicationCapacity = builder.insightDeduplicationCapacity;
+        this.insightSamplingRate = builder.insightSamplingRate;
+        this.insightSamplingRates = ImmutableMap.copyOf(builder.insightSamplingRates);
+        this.dataStorageFactory = builder.dataStorageFactory;
+        this.trackingQueueCapacity = builder.trackingQueueCapacity;
+        this.trackingBackpressure = builder.trackingBackpressure;
+        this.trackingBlockTimeout = builder.trackingBlockTimeout;
+        this.trackingFlushTimeout = builder.trackingFlushTimeout;
+        this.userIndependentFlags = builder.userIndependentFlags;
+        this.offlineDataDirectory = builder.offlineDataDirectory;
+    }
+
+    public long getContextCacheSize() {
+        return contextCacheSize;
+    }
+
+    public long getEvaluationCacheSize() {
+        return evaluationCacheSize;
+    }
+
+    public Duration getEvaluationCacheTtl() {
+        return evaluationCacheTtl;
+    }
+
+    public Set<String> getEvaluationCacheExcludedFlags() {
+        return evaluationCacheExcludedFlags;
+    }
+
+    public boolean isEvaluationMetrics() {
+        return evaluationMetrics;
+    }
+
+    public Duration getStartWaitTime() {
+        return startWaitTime;
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public Duration getConfigurationChangeWindow() {
+        return configurationChangeWindow;
+    }
+
+    public int getConfigurationChangeMaxBatchSize() {
+        return configurationChangeMaxBatchSize;
+    }
+
+    public boolean isAttributeProjection() {
+        return attributeProjection;
+    }
+
+    public Duration getInsightDeduplicationWindow() {
+        return insightDeduplicationWindow;
+    }
+
+    public int getInsightDeduplicationCapacity() {
+        return insightDeduplicationCapacity;
+    }
+
+    public double getInsightSamplingRate() {
+        return insightSamplingRate;
+    }
+
+    public Map<String, Double> getInsightSamplingRates() {
+        return insightSamplingRates;
+    }
+
+    public DataStorageFactory getDataStorageFactory() {
+        return dataStorageFactory;
+    }
+
+    public int getTrackingQueueCapacity() {
+        return trackingQueueCapacity;
+    }
+
+    public TrackingBackpressure getTrackingBackpressure() {
+        return trackingBackpressure;
+    }
+
+    public Duration getTrackingBlockTimeout() {
+        return trackingBlockTimeout;
+    }
+
+    public Duration getTrackingFlushTimeout() {
+        return trackingFlushTimeout;
+    }
+
+    public boolean isUserIndependentFlags() {
+        return userIndependentFlags;
+    }
+
+    public Path getOfflineDataDirectory() {
+        return offlineDataDirectory;
+    }
+
+    boolean isInsightFiltering() {
+        return !insightDeduplicationWindow.isZero()
+                || insightSamplingRate < 1D
+                || insightSamplingRates.values().stream().anyMatch(rate -> rate < 1D);
+    }
+
+    public static final class Builder {
+        private long contextCacheSize = 0;
+        private long evaluationCacheSize = 0;
+        private Duration evaluationCacheTtl = Duration.ZERO;
+        private Set<String> evaluationCacheExcludedFlags = ImmutableSet.of();
+        private boolean evaluationMetrics = false;
+        private Duration startWaitTime = Duration.ofMinutes(3);
+        private Path snapshotFile = null;
+        private Duration configurationChangeWindow = Duration.ZERO;
+        private int configurationChangeMaxBatchSize = 500;
+        private boolean attributeProjection = false;
+        private Duration insightDeduplicationWindow = Duration.ZERO;
+        private int insightDeduplicationCapacity = 100_000;
+        private double insightSamplingRate = 1D;
+        private final Map<String, Double> insightSamplingRates = new HashMap<>();
+        private DataStorageFactory dataStorageFactory = null;
+        private int trackingQueueCapacity = 10_000;
+        private TrackingBackpressure trackingBackpressure = TrackingBackpressure.DROP;
+        private Duration trackingBlockTimeout = Duration.ofMillis(100);
+        private Duration trackingFlushTimeout = Duration.ofSeconds(5);
+        private boolean userIndependentFlags = false;
+        private Path offlineDataDirectory = null;
+
+        public Builder() {
+        }
+
+        /**
+         * Caches up to {@code size} users converted from evaluation contexts, so that contexts with the same
+         * targeting key and string attributes are converted only once; 0 disables the cache.
+         *
+         * @param size the maximum number of cached users
+         * @return the builder
+         */
+        public Builder contextCacheSize(long size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("The context cache size must not be negative.");
+            }
+            this.contextCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Caches up to {@code size} successful evaluations per flag key, context content and requested type.
+         * The entries of a flag are dropped when the flag changes, and the whole cache when the data update
+         * state goes back to INITIALIZING or INTERRUPTED; 0 disables the cache.
+         * <p>
+         * The FeatBit client can't report an insight without evaluating the flag, so a hit is only served if its
+         * insight is deduplicated or sampled out, see {@link #insightDeduplicationWindow(Duration)}; the flag is
+         * evaluated on the client otherwise, and the hit is counted as a miss. The cache is therefore disabled
+         * without the insight deduplication or sampling, which require a provider built from a
+         * {@code FBConfig.Builder}.
+         *
+         * @param size the maximum number of cached evaluations
+         * @return the builder
+         */
+        public Builder evaluationCacheSize(long size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("The evaluation cache size must not be negative.");
+            }
+            this.evaluationCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Expires cached evaluations after a fixed time; {@link Duration#ZERO}, the default, keeps them until
+         * the flag changes or they are evicted.
+         *
+         * @param ttl the time to live of a cached evaluation
+         * @return the builder
+         */
+        public Builder evaluationCacheTtl(Duration ttl) {
+            if (ttl == null || ttl.isNegative()) {
+                throw new IllegalArgumentException("The evaluation cache ttl must not be null or negative.");
+            }
+            this.evaluationCacheTtl = ttl;
+            return this;
+        }
+
+        /**
+         * Flags that are always evaluated, even if the evaluation cache is enabled.
+         *
+         * @param flagKeys the keys of the flags
+         * @return the builder
+         */
+        public Builder evaluationCacheExcludedFlags(String... flagKeys) {
+            this.evaluationCacheExcludedFlags = ImmutableSet.copyOf(Arrays.asList(flagKeys));
+            return this;
+        }
+
+        /**
+         * Registers a provider hook that records per-flag evaluation counts, reasons, error codes and latency
+         * histograms, see {@link FBProvider#getEvaluationMetrics()}. Up to 10,000 flags are recorded one by one,
+         * the others together; the metrics of a flag are dropped when the flag is removed. The metrics of a flag
+         * take about 2 KB, more once their counters are contended, so the metrics take up to about 20 MB.
+         *
+         * @param enabled true to record the evaluation metrics
+         * @return the builder
+         */
+        public Builder evaluationMetrics(boolean enabled) {
+            this.evaluationMetrics = enabled;
+            return this;
+        }
+
+        /**
+         * How long {@link FBProvider#initialize} waits for the first sync with FeatBit, 3 minutes by default.
+         *
+         * @param startWaitTime the time to wait
+         * @return the builder
+         */
+        public Builder startWaitTime(Duration startWaitTime) {
+            if (startWaitTime == null || startWaitTime.isNegative()) {
+                throw new IllegalArgumentException("The start wait time must not be null or negative.");
+            }
+            this.startWaitTime = startWaitTime;
+            return this;
+        }
+
+        /**
+         * Persists the latest full data set to a local file whenever the flags change, and serves it at startup
+         * until the first sync with FeatBit completes, so that the provider is ready immediately.
+         * <p>
+         * The file is only written by a provider built from a {@code FBConfig.Builder}.
+         * Evaluations served from the snapshot are not reported to FeatBit insights.
+         *
+         * @param file the snapshot file
+         * @return the builder
+         */
+        public Builder snapshotFile(Path file) {
+            this.snapshotFile = file;
+            return this;
+        }
+
+        /**
+         * Coalesces the flag changes within a time window into a single {@code PROVIDER_CONFIGURATION_CHANGED}
+         * event carrying all the changed flags, for instance when a full data sync updates many flags;
+         * {@link Duration#ZERO}, the default, emits an event per flag change.
+         *
+         * @param window the time window, starting at the first change
+         * @return the builder
+         */
+        public Builder configurationChangeWindow(Duration window) {
+            if (window == null || window.isNegative()) {
+                throw new IllegalArgumentException("The configuration change window must not be null or negative.");
+            }
+            this.configurationChangeWindow = window;
+            return this;
+        }
+
+        /**
+         * The maximum number of flags of a coalesced configuration change event, 500 by default.
+         * A batch is emitted as soon as it is full, before the end of the window.
+         *
+         * @param size the maximum number of flags per event
+         * @return the builder
+         */
+        public Builder configurationChangeMaxBatchSize(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("The configuration change max batch size must be positive.");
+            }
+            this.configurationChangeMaxBatchSize = size;
+            return this;
+        }
+
+        /**
+         * Only copies the context attributes referenced by the current flag and segment rules to the FeatBit user,
+         * besides the targeting key and name. The referenced properties are refreshed on flag updates.
+         * <p>
+         * The other attributes are then not reported to FeatBit insights either.
+         * It only works with a provider built from a {@code FBConfig.Builder}.
+         *
+         * @param enabled true to skip the attributes that no flag references
+         * @return the builder
+         */
+        public Builder attributeProjection(boolean enabled) {
+            this.attributeProjection = enabled;
+            return this;
+        }
+
+        /**
+         * Reports an evaluation to FeatBit insights only once per user, flag and variation within a time window,
+         * for the hot flags evaluated over and over for the same users; {@link Duration#ZERO}, the default, reports
+         * every evaluation. A user is reported again one to two windows after its first evaluation.
+         * <p>
+         * The evaluations run against an offline copy of the flags, updated with each change of the FeatBit client,
+         * and only the evaluations to be reported run on the FeatBit client. A flag is evaluated twice only when a user
+         * gets another variation within the window. It only works with a provider built from a {@code FBConfig.Builder}.
+         *
+         * @param window the time window
+         * @return the builder
+         * @see FBProvider#getInsightStatistics()
+         */
+        public Builder insightDeduplicationWindow(Duration window) {
+            if (window == null || window.isNegative()) {
+                throw new IllegalArgumentException("The insight deduplication window must not be null or negative.");
+            }
+            this.insightDeduplicationWindow = window;
+            return this;
+        }
+
+        /**
+         * The number of user, flag and variation combinations remembered per deduplication window, 100 000 by default;
+         * the user and flag pairs take room too.
+         * The memory is allocated per window, 16 to 32 bytes per combination for each of the two windows kept. Beyond this number, the insights are
+         * reported rather than deduplicated.
+         *
+         * @param capacity the number of combinations
+         * @return the builder
+         */
+        public Builder insightDeduplicationCapacity(int capacity) {
+            if (capacity <= 0 || capacity > 1 << 28) {
+                throw new IllegalArgumentException("The insight deduplication capacity must be between 1 and 2^28.");
+            }
+            this.insightDeduplicationCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * The fraction of the evaluations reported to FeatBit insights, after the deduplication; 1, the default,
+         * reports all of them.
+         *
+         * @param rate the sampling rate, between 0 and 1
+         * @return the builder
+         */
+        public Builder insightSamplingRate(double rate) {
+            this.insightSamplingRate = checkSamplingRate(rate);
+            return this;
+        }
+
+        /**
+         * The fraction of the evaluations of a flag reported to FeatBit insights, instead of the default rate.
+         *
+         * @param flagKey the key of the flag
+         * @param rate    the sampling rate, between 0 and 1
+         * @return the builder
+         */
+        public Builder insightSamplingRate(String flagKey, double rate) {
+            if (flagKey == null) {
+                throw new IllegalArgumentException("The flag key must not be null.");
+            }
+            this.insightSamplingRates.put(flagKey, checkSamplingRate(rate));
+            return this;
+        }
+
+        /**
+         * The data storage of the FeatBit client that the provider builds from a {@code FBConfig.Builder}, for
+         * instance a {@link CompactDataStorageFactory}; the in-memory storage of the SDK by default.
+         * A client built from a {@code FBConfig} uses the storage of its config.
+         * <p>
+         * The flag snapshot, the attribute projection and the user-independent flags keep a copy of the flags and
+         * segments in the wire format, user key lists included.
+         *
+         * @param factory the data storage factory
+         * @return the builder
+         */
+        public Builder dataStorageFactory(DataStorageFactory factory) {
+            this.dataStorageFactory = factory;
+            return this;
+        }
+
+        /**
+         * The number of tracking events waiting to be sent to FeatBit, 10 000 by default.
+         *
+         * @param capacity the capacity of the tracking queue
+         * @return the builder
+         */
+        public Builder trackingQueueCapacity(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("The tracking queue capacity must be positive.");
+            }
+            this.trackingQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * What {@link FBProvider#track} does when the tracking queue is full, {@link TrackingBackpressure#DROP}
+         * by default.
+         *
+         * @param backpressure the backpressure strategy
+         * @return the builder
+         */
+        public Builder trackingBackpressure(TrackingBackpressure backpressure) {
+            if (backpressure == null) {
+                throw new IllegalArgumentException("The tracking backpressure must not be null.");
+            }
+            this.trackingBackpressure = backpressure;
+            return this;
+        }
+
+        /**
+         * How long {@link FBProvider#track} waits for free space in a full queue with
+         * {@link TrackingBackpressure#BLOCK}, 100 ms by default.
+         *
+         * @param timeout the time to wait
+         * @return the builder
+         */
+        public Builder trackingBlockTimeout(Duration timeout) {
+            if (timeout == null || timeout.isNegative()) {
+                throw new IllegalArgumentException("The tracking block timeout must not be null or negative.");
+            }
+            this.trackingBlockTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * How long {@link FBProvider#shutdown} keeps sending the pending tracking events, 5 seconds by default.
+         *
+         * @param timeout the time to flush the events
+         * @return the builder
+         */
+        public Builder trackingFlushTimeout(Duration timeout) {
+            if (timeout == null || timeout.isNegative()) {
+                throw new IllegalArgumentException("The tracking flush timeout must not be null or negative.");
+            }
+            this.trackingFlushTimeout = timeout;
+            return this;
+        }
+
+        /**
+         * Serves the flags whose evaluation doesn't depend on the user, such as kill switches, without evaluating
+         * the flag again: disabled flags, and flags without target users nor rules that serve a single variation
+         * to everyone. The flags are reclassified as the client's storage is updated.
+         * <p>
+         * The FeatBit client can't report an insight without evaluating the flag, so a precomputed evaluation is
+         * only served if its insight is deduplicated or sampled out, see {@link #insightDeduplicationWindow(Duration)};
+         * the flag is evaluated on the client for the full user otherwise. The option is therefore disabled without
+         * the insight deduplication or sampling, which require a provider built from a {@code FBConfig.Builder}.
+         *
+         * @param enabled true to precompute the evaluations of the user-independent flags
+         * @return the builder
+         */
+        public Builder userIndependentFlags(boolean enabled) {
+            this.userIndependentFlags = enabled;
+            return this;
+        }
+
+        /**
+         * Loads the flags of an offline FeatBit client from the data-sync documents of a directory, instead of
+         * calling {@code initializeFromExternalJson}, and keeps watching the directory for new, modified or deleted
+         * files.
+         * <p>
+         * Each {@code .json} file holds a {@code full} document, which replaces all the flags and segments, or a
+         * {@code patch} document, which only updates the flags and segments it contains; the files are applied in
+         * name order at startup, and again from scratch when a file is deleted. Only the changed flags fire
+         * {@code PROVIDER_CONFIGURATION_CHANGED} events. The client must be configured in offline mode.
+         * <p>
+         * After the first load, only the changed flags and segments are upserted into the client, on the watcher
+         * thread. This requires a provider built from a {@code FBConfig.Builder}; otherwise, and when a flag or
+         * segment is removed, all the flags and segments are loaded again.
+         *
+         * @param directory the directory of the flag files
+         * @return the builder
+         */
+        public Builder offlineDataDirectory(Path directory) {
+            this.offlineDataDirectory = directory;
+            return this;
+        }
+
+        private static double checkSamplingRate(double rate) {
+            if (!(rate >= 0D && rate <= 1D)) {
+                throw new IllegalArgumentException("The insight sampling rate must be between 0 and 1.");
+            }
+            return rate;
+        }
+
+        public FBProviderOptions build() {
+            return new FBProviderOptions(this);
+        }
+    }
+}
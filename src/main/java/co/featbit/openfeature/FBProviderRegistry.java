@@ -0,0 +1,156 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the providers of many FeatBit environments in one JVM, typically one per OpenFeature domain.
+ * <p>
+ * An sdk key has a single provider while it is open, and so a single FeatBit client, connection, event sender and
+ * set of SDK threads per environment: the same provider is returned for the sdk key until it is shut down, which
+ * closes its client. The provider may be set on several OpenFeature domains, which shut it down once it is no longer
+ * set on any. The config and options of the first call are used, the options of a later call must be the same
+ * instance or a warning is logged.
+ * <p>
+ * The background work of the providers themselves, such as writing flag snapshots or sending tracking events,
+ * runs on a thread pool shared by all the environments.
+ *
+ * <pre>{@code
+ * FBProviderRegistry registry = new FBProviderRegistry();
+ * OpenFeatureAPI.getInstance().setProviderAndWait("domain-a", registry.getProvider(SDK_KEY_A, configA));
+ * OpenFeatureAPI.getInstance().setProviderAndWait("domain-b", registry.getProvider(SDK_KEY_B, configB));
+ * }</pre>
+ */
+public final class FBProviderRegistry implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FBProviderRegistry.class);
+    private static final int DEFAULT_BACKGROUND_THREADS = 2;
+
+    private final Map<String, Entry> providers = new HashMap<>();
+    private final ScheduledExecutorService executor;
+
+    public FBProviderRegistry() {
+        this(DEFAULT_BACKGROUND_THREADS);
+    }
+
+    /**
+     * @param backgroundThreads the number of threads running the background work of all the providers
+     */
+    public FBProviderRegistry(int backgroundThreads) {
+        if (backgroundThreads <= 0) {
+            throw new IllegalArgumentException("The number of background threads must be positive.");
+        }
+        this.executor = Executors.newScheduledThreadPool(backgroundThreads, new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("featbit-provider-shared-%d")
+                .build());
+    }
+
+    public FBProvider getProvider(String sdkKey, FBConfig.Builder configBuilder) {
+        return getProvider(sdkKey, configBuilder, FBProviderOptions.DEFAULT);
+    }
+
+    /**
+     * Returns the provider of an environment, a new one if the sdk key has no open provider.
+     *
+     * @param sdkKey        the sdk key of the environment
+     * @param configBuilder the config of the FeatBit client, only used if the sdk key has no open provider
+     * @param options       the provider options, only used if the sdk key has no open provider
+     * @return the provider
+     */
+    public FBProvider getProvider(String sdkKey, FBConfig.Builder configBuilder, FBProviderOptions options) {
+        if (executor.isShutdown()) {
+            throw new IllegalStateException("The registry is closed.");
+        }
+        Entry entry = get(sdkKey);
+        if (entry == null) {
+            // build the provider out of the lock, the FeatBit client may wait for its first sync
+            SharedClient shared = SharedClient.create(sdkKey, configBuilder, options.getDataStorageFactory(), this::remove);
+            Entry created;
+            try {
+                created = new Entry(new FBProvider(sdkKey, shared, options, executor), options, shared);
+            } catch (RuntimeException e) {
+                closeQuietly(shared);
+                throw e;
+            }
+            synchronized (providers) {
+                entry = get(sdkKey);
+                if (entry == null) {
+                    providers.put(sdkKey, created);
+                    return created.provider;
+                }
+            }
+            // another thread created the provider in the meantime
+            created.provider.shutdown();
+        }
+        if (entry.options != options) {
+            logger.warn("FB JAVA PROVIDER: the sdk key {} already has a provider, the options of its first provider are used", sdkKey);
+        }
+        return entry.provider;
+    }
+
+    /**
+     * @return the number of FeatBit clients currently open, one per sdk key with an open provider
+     */
+    public int getClientCount() {
+        synchronized (providers) {
+            return providers.size();
+        }
+    }
+
+    /**
+     * Stops the shared background threads, the providers should be shut down first.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // null if the sdk key has no provider or its provider is being shut down
+    private Entry get(String sdkKey) {
+        synchronized (providers) {
+            Entry entry = providers.get(sdkKey);
+            return entry != null && !entry.provider.isShutdown() ? entry : null;
+        }
+    }
+
+    private void remove(SharedClient shared) {
+        synchronized (providers) {
+            providers.values().removeIf(entry -> entry.shared == shared);
+        }
+    }
+
+    private static void closeQuietly(SharedClient shared) {
+        try {
+            shared.release();
+        } catch (IOException e) {
+            logger.warn("FB JAVA PROVIDER: failed to close a client", e);
+        }
+    }
+
+    private static final class Entry {
+        private final FBProvider provider;
+        private final FBProviderOptions options;
+        private final SharedClient shared;
+
+        private Entry(FBProvider provider, FBProviderOptions options, SharedClient shared) {
+            this.provider = provider;
+            this.options = options;
+            this.shared = shared;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the flags and segments of an environment, in the FeatBit data-sync wire format:
+ * flags by key and segments by id.
+ */
+final class FlagDataSet {
+    static final FlagDataSet EMPTY = new FlagDataSet(ImmutableMap.of(), ImmutableMap.of());
+
+    private final Map<String, JsonObject> flags;
+    private final Map<String, JsonObject> segments;
+
+    FlagDataSet(Map<String, JsonObject> flags, Map<String, JsonObject> segments) {
+        this.flags = ImmutableMap.copyOf(flags);
+        this.segments = ImmutableMap.copyOf(segments);
+    }
+
+    Map<String, JsonObject> getFlags() {
+        return flags;
+    }
+
+    Map<String, JsonObject> getSegments() {
+        return segments;
+    }
+
+    // null if the flag is unknown
+    String variationType(String flagKey) {
+        JsonObject flag = flags.get(flagKey);
+        JsonElement variationType = flag == null ? null : flag.get("variationType");
+        return variationType != null && variationType.isJsonPrimitive() ? variationType.getAsString() : null;
+    }
+
+    boolean isEmpty() {
+        return flags.isEmpty() && segments.isEmpty();
+    }
+
+    FlagDataSet withFlag(JsonObject flag) {
+        return with(ImmutableMap.of(flagKey(flag), flag), ImmutableMap.of());
+    }
+
+    FlagDataSet withSegment(JsonObject segment) {
+        return with(ImmutableMap.of(), ImmutableMap.of(segmentId(segment), segment));
+    }
+
+    // replaces or adds a batch of flags and segments, each map is copied once whatever the size of the batch
+    FlagDataSet with(Map<String, JsonObject> flagUpdates, Map<String, JsonObject> segmentUpdates) {
+        return new FlagDataSet(replace(flags, flagUpdates), replace(segments, segmentUpdates));
+    }
+
+    static FlagDataSet parse(String dataSyncJson) {
+        return parse(JsonParser.parseString(dataSyncJson).getAsJsonObject());
+    }
+
+    // the flags and segments of a data-sync document, whatever its event type
+    static FlagDataSet parse(JsonObject dataSyncDoc) {
+        JsonObject data = dataSyncDoc.getAsJsonObject("data");
+        Map<String, JsonObject> flags = new LinkedHashMap<>();
+        Map<String, JsonObject> segments = new LinkedHashMap<>();
+        JsonArray flagArray = data.getAsJsonArray("featureFlags");
+        if (flagArray != null) {
+            for (JsonElement flag : flagArray) {
+                flags.put(flagKey(flag.getAsJsonObject()), flag.getAsJsonObject());
+            }
+        }
+        JsonArray segmentArray = data.getAsJsonArray("segments");
+        if (segmentArray != null) {
+            for (JsonElement segment : segmentArray) {
+                segments.put(segmentId(segment.getAsJsonObject()), segment.getAsJsonObject());
+            }
+        }
+        return new FlagDataSet(flags, segments);
+    }
+
+    // a full data-sync document, accepted by FBClient#initializeFromExternalJson
+    String toDataSyncJson() {
+        JsonArray flagArray = new JsonArray(flags.size());
+        flags.values().forEach(flagArray::add);
+        JsonArray segmentArray = new JsonArray(segments.size());
+        segments.values().forEach(segmentArray::add);
+        JsonObject data = new JsonObject();
+        data.addProperty("eventType", "full");
+        data.add("featureFlags", flagArray);
+        data.add("segments", segmentArray);
+        JsonObject doc = new JsonObject();
+        doc.addProperty("messageType", "data-sync");
+        doc.add("data", data);
+        return doc.toString();
+    }
+
+    static String flagKey(JsonObject flag) {
+        return flag.get("key").getAsString();
+    }
+
+    static String segmentId(JsonObject segment) {
+        return segment.get("id").getAsString();
+    }
+
+    // copies the items once, the constructor doesn't copy an ImmutableMap again
+    private static Map<String, JsonObject> replace(Map<String, JsonObject> items, Map<String, JsonObject> updates) {
+        if (updates.isEmpty()) {
+            return items;
+        }
+        ImmutableMap.Builder<String, JsonObject> res = ImmutableMap.builder();
+        // replaced in place, so that the order of the items is kept
+        for (Map.Entry<String, JsonObject> entry : items.entrySet()) {
+            JsonObject update = updates.get(entry.getKey());
+            res.put(entry.getKey(), update == null ? entry.getValue() : update);
+        }
+        for (Map.Entry<String, JsonObject> update : updates.entrySet()) {
+            if (!items.containsKey(update.getKey())) {
+                res.put(update);
+            }
+        }
+        return res.build();
+    }
+}
@@ -0,0 +1,453 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.exterior.Context;
+import co.featbit.server.exterior.DataStorage;
+import co.featbit.server.exterior.DataStorageFactory;
+import co.featbit.server.exterior.DataStorageTypes;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Decorates the data storage of the FeatBit client to keep a {@link FlagDataSet} copy of the flags and segments
+ * in the wire format, and publishes it to the provider features that need the flag data itself,
+ * such as the on-disk snapshot.
+ * <p>
+ * The copy is only kept while a listener is registered: the wire format holds the user key lists as JSON arrays,
+ * which would cancel the savings of a compact storage such as {@link CompactDataStorageFactory}. Without listeners,
+ * {@link #current()} is empty.
+ * <p>
+ * It also keeps replicas of the storage in sync, such as the storage of an offline client: a replica gets the current
+ * items when it is added, then every update right after the storage of the client. The items are shared, not copied.
+ * <p>
+ * Listeners run on the SDK's update thread and must hand any slow work to another thread.
+ */
+final class FlagDataStorageFactory implements DataStorageFactory {
+    /**
+     * Observes the flag updates of the client's storage on the SDK's update thread, around the update itself,
+     * so that the state derived from a flag is dropped before the client evaluates the new flag.
+     */
+    interface FlagUpdateListener {
+        // before the storage changes, the flag key is null if all the flags are replaced
+        void beforeUpdate(String flagKey);
+
+        // after the storage and the flag data changed, even if the storage rejected the update
+        void afterUpdate(FlagDataSet data, String flagKey);
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(FlagDataStorageFactory.class);
+    private static final ConcurrentMap<Class<?>, Optional<Field>> VARIATION_TYPE_FIELDS = new ConcurrentHashMap<>();
+    private static final Gson GSON = new Gson();
+
+    private final DataStorageFactory delegate;
+    private final List<Consumer<FlagDataSet>> listeners = new CopyOnWriteArrayList<>();
+    private final List<FlagUpdateListener> updateListeners = new CopyOnWriteArrayList<>();
+    private final List<DataStorage> replicas = new CopyOnWriteArrayList<>();
+    // orders the updates of the storage with the seeding of a new replica or listener
+    private final Object updateLock = new Object();
+    private volatile FlagDataSet current = FlagDataSet.EMPTY;
+    private volatile MirroringDataStorage storage;
+
+    FlagDataStorageFactory(DataStorageFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public DataStorage createDataStorage(Context context) {
+        MirroringDataStorage res = new MirroringDataStorage(delegate.createDataStorage(context));
+        storage = res;
+        return res;
+    }
+
+    void addListener(Consumer<FlagDataSet> listener) {
+        synchronized (updateLock) {
+            startMirroring();
+            listeners.add(listener);
+        }
+    }
+
+    void removeListener(Consumer<FlagDataSet> listener) {
+        synchronized (updateLock) {
+            listeners.remove(listener);
+            stopMirroring();
+        }
+    }
+
+    // the listener gets the current flag data when it is added
+    void addUpdateListener(FlagUpdateListener listener) {
+        synchronized (updateLock) {
+            startMirroring();
+            updateListeners.add(listener);
+            listener.afterUpdate(current, null);
+        }
+    }
+
+    void removeUpdateListener(FlagUpdateListener listener) {
+        synchronized (updateLock) {
+            updateListeners.remove(listener);
+            stopMirroring();
+        }
+    }
+
+    // guarded by updateLock
+    private boolean isMirroring() {
+        return !listeners.isEmpty() || !updateListeners.isEmpty();
+    }
+
+    // guarded by updateLock, copies the items the client already has
+    private void startMirroring() {
+        DataStorage dataStorage = storage;
+        if (!isMirroring() && dataStorage != null && dataStorage.isInitialized()) {
+            current = new FlagDataSet(toJson(dataStorage.getAll(DataStorageTypes.FEATURES), true),
+                    toJson(dataStorage.getAll(DataStorageTypes.SEGMENTS), false));
+        }
+    }
+
+    // guarded by updateLock
+    private void stopMirroring() {
+        if (!isMirroring()) {
+            current = FlagDataSet.EMPTY;
+        }
+    }
+
+    void addReplica(DataStorage replica) {
+        synchronized (updateLock) {
+            DataStorage dataStorage = storage;
+            if (dataStorage != null && dataStorage.isInitialized()) {
+                Map<DataStorageTypes.Category, Map<String, DataStorageTypes.Item>> allData = new HashMap<>();
+                allData.put(DataStorageTypes.FEATURES, new HashMap<>(dataStorage.getAll(DataStorageTypes.FEATURES)));
+                allData.put(DataStorageTypes.SEGMENTS, new HashMap<>(dataStorage.getAll(DataStorageTypes.SEGMENTS)));
+                replica.init(allData, dataStorage.getVersion());
+            }
+            replicas.add(replica);
+        }
+    }
+
+    void removeReplica(DataStorage replica) {
+        replicas.remove(replica);
+    }
+
+    // empty if no listener is registered
+    FlagDataSet current() {
+        return current;
+    }
+
+    /**
+     * Upserts flags and segments in the wire format through the storage of the client, as the SDK applies a patch,
+     * so that the update listeners, the flag data copy and the replicas follow. The items are deserialized into the
+     * classes of the SDK models that the storage already holds.
+     *
+     * @return false if an item was not upserted: the storage is not initialized, holds no item of the category to
+     * learn its model class from, can't deserialize the item or rejected it
+     */
+    boolean upsertAll(Collection<JsonObject> flags, Collection<JsonObject> segments) {
+        MirroringDataStorage dataStorage = storage;
+        if (dataStorage == null || !dataStorage.isInitialized()) {
+            return false;
+        }
+        Map<String, DataStorageTypes.Item> flagItems = toItems(dataStorage, DataStorageTypes.FEATURES, flags);
+        Map<String, DataStorageTypes.Item> segmentItems = toItems(dataStorage, DataStorageTypes.SEGMENTS, segments);
+        return flagItems != null && segmentItems != null && dataStorage.upsertAll(flagItems, segmentItems);
+    }
+
+    // the SDK models of the items by key, null if an item can't be deserialized
+    private static Map<String, DataStorageTypes.Item> toItems(DataStorage dataStorage,
+                                                            DataStorageTypes.Category category,
+                                                            Collection<JsonObject> items) {
+        Map<String, DataStorageTypes.Item> res = new HashMap<>((int) (items.size() / 0.75f) + 1);
+        if (items.isEmpty()) {
+            return res;
+        }
+        boolean isFlag = category == DataStorageTypes.FEATURES;
+        Class<? extends DataStorageTypes.Item> type = null;
+        for (DataStorageTypes.Item item : dataStorage.getAll(category).values()) {
+            type = item.getClass();
+            break;
+        }
+        if (type == null) {
+            return null;
+        }
+        try {
+            for (JsonObject item : items) {
+                res.put(isFlag ? FlagDataSet.flagKey(item) : FlagDataSet.segmentId(item), GSON.fromJson(item, type));
+            }
+            return res;
+        } catch (RuntimeException e) {
+            logger.debug("FB JAVA PROVIDER: failed to deserialize a flag data item", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the variation type of a flag, such as {@code boolean} or {@code json}, from the model the client
+     * evaluates, or from its wire format if the model has no such field.
+     *
+     * @return the variation type, null if the flag is unknown
+     */
+    String variationType(String flagKey) {
+        DataStorage dataStorage = storage;
+        DataStorageTypes.Item item = dataStorage == null ? null : dataStorage.get(DataStorageTypes.FEATURES, flagKey);
+        if (item == null) {
+            return null;
+        }
+        // get first, computeIfAbsent locks the bin on Java 8 even if the key is present
+        Optional<Field> field = VARIATION_TYPE_FIELDS.get(item.getClass());
+        if (field == null) {
+            field = VARIATION_TYPE_FIELDS.computeIfAbsent(item.getClass(), FlagDataStorageFactory::variationTypeField);
+        }
+        if (!field.isPresent()) {
+            JsonObject json = toJson(item, true);
+            JsonElement variationType = json == null ? null : json.get("variationType");
+            return variationType != null && variationType.isJsonPrimitive() ? variationType.getAsString() : null;
+        }
+        try {
+            Object variationType = field.get().get(item);
+            return variationType instanceof String ? (String) variationType : null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("FB JAVA PROVIDER: failed to read the variation type of flag {}", flagKey, e);
+            return null;
+        }
+    }
+
+    private static Optional<Field> variationTypeField(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField("variationType");
+                field.setAccessible(true);
+                return Optional.of(field);
+            } catch (NoSuchFieldException ignore) {
+                // declared by a superclass
+            } catch (RuntimeException e) {
+                // not accessible, read from the wire format
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Map<String, JsonObject> toJson(Map<String, DataStorageTypes.Item> items, boolean isFlag) {
+        Map<String, JsonObject> res = new HashMap<>((int) (items.size() / 0.75f) + 1);
+        items.values().forEach(item -> {
+            JsonObject json = toJson(item, isFlag);
+            if (json != null) {
+                res.put(isFlag ? FlagDataSet.flagKey(json) : FlagDataSet.segmentId(json), json);
+            }
+        });
+        return res;
+    }
+
+    // the SDK models are deserialized from the wire format, serializing them gives it back
+    // null if the item can't be serialized, the client has already stored it and must not see the error
+    private JsonObject toJson(DataStorageTypes.Item item, boolean isFlag) {
+        try {
+            JsonObject json = GSON.toJsonTree(item).getAsJsonObject();
+            // an item without a key fails here rather than when it is published
+            if (isFlag) {
+                FlagDataSet.flagKey(json);
+            } else {
+                FlagDataSet.segmentId(json);
+            }
+            return json;
+        } catch (RuntimeException e) {
+            logger.error("FB JAVA PROVIDER: failed to copy a flag data item, the provider features using the flag data may miss it", e);
+            return null;
+        }
+    }
+
+    private void beforeUpdate(String flagKey) {
+        for (FlagUpdateListener listener : updateListeners) {
+            try {
+                listener.beforeUpdate(flagKey);
+            } catch (Exception e) {
+                logger.error("FB JAVA PROVIDER: unexpected error in flag update listener", e);
+            }
+        }
+    }
+
+    private void afterUpdate(String flagKey) {
+        for (FlagUpdateListener listener : updateListeners) {
+            try {
+                listener.afterUpdate(current, flagKey);
+            } catch (Exception e) {
+                logger.error("FB JAVA PROVIDER: unexpected error in flag update listener", e);
+            }
+        }
+    }
+
+    private void publish(FlagDataSet data) {
+        for (Consumer<FlagDataSet> listener : listeners) {
+            try {
+                listener.accept(data);
+            } catch (Exception e) {
+                logger.error("FB JAVA PROVIDER: unexpected error in flag data listener", e);
+            }
+        }
+    }
+
+    private final class MirroringDataStorage implements DataStorage {
+        private final DataStorage storage;
+
+        private MirroringDataStorage(DataStorage storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public void init(Map<DataStorageTypes.Category, Map<String, DataStorageTypes.Item>> allData, Long version) {
+            FlagDataSet data;
+            synchronized (updateLock) {
+                beforeUpdate(null);
+                storage.init(allData, version);
+                for (DataStorage replica : replicas) {
+                    try {
+                        // a storage may keep the maps it is given
+                        replica.init(copy(allData), version);
+                    } catch (RuntimeException e) {
+                        logger.error("FB JAVA PROVIDER: failed to initialize a replica of the flag data", e);
+                    }
+                }
+                if (isMirroring()) {
+                    data = new FlagDataSet(toJson(storage.getAll(DataStorageTypes.FEATURES), true),
+                            toJson(storage.getAll(DataStorageTypes.SEGMENTS), false));
+                    current = data;
+                } else {
+                    data = null;
+                }
+                afterUpdate(null);
+            }
+            if (data != null) {
+                publish(data);
+            }
+        }
+
+        @Override
+        public DataStorageTypes.Item get(DataStorageTypes.Category category, String key) {
+            return storage.get(category, key);
+        }
+
+        @Override
+        public Map<String, DataStorageTypes.Item> getAll(DataStorageTypes.Category category) {
+            return storage.getAll(category);
+        }
+
+        @Override
+        public boolean upsert(DataStorageTypes.Category category, String key, DataStorageTypes.Item item, Long version) {
+            boolean isFlag = category == DataStorageTypes.FEATURES;
+            boolean res;
+            FlagDataSet data = null;
+            synchronized (updateLock) {
+                if (isFlag) {
+                    beforeUpdate(key);
+                }
+                res = upsertReplicated(category, key, item, version);
+                if (res) {
+                    boolean isItem = isFlag || category == DataStorageTypes.SEGMENTS;
+                    JsonObject json = isItem && isMirroring() ? toJson(item, isFlag) : null;
+                    if (json != null) {
+                        data = isFlag ? current.withFlag(json) : current.withSegment(json);
+                        current = data;
+                    }
+                }
+                if (isFlag) {
+                    afterUpdate(key);
+                }
+            }
+            if (data != null) {
+                publish(data);
+            }
+            return res;
+        }
+
+        // one update of the listeners and the flag data copy for the whole batch, false if an item was rejected
+        private boolean upsertAll(Map<String, DataStorageTypes.Item> flags, Map<String, DataStorageTypes.Item> segments) {
+            boolean res = true;
+            FlagDataSet data = null;
+            synchronized (updateLock) {
+                flags.keySet().forEach(FlagDataStorageFactory.this::beforeUpdate);
+                // the storage may require increasing versions
+                long version = Math.max(storage.getVersion(), System.currentTimeMillis());
+                Map<String, JsonObject> segmentUpdates = new HashMap<>();
+                for (Map.Entry<String, DataStorageTypes.Item> segment : segments.entrySet()) {
+                    res &= upsertMirrored(DataStorageTypes.SEGMENTS, segment, ++version, segmentUpdates);
+                }
+                Map<String, JsonObject> flagUpdates = new HashMap<>();
+                for (Map.Entry<String, DataStorageTypes.Item> flag : flags.entrySet()) {
+                    res &= upsertMirrored(DataStorageTypes.FEATURES, flag, ++version, flagUpdates);
+                }
+                if (!flagUpdates.isEmpty() || !segmentUpdates.isEmpty()) {
+                    data = current.with(flagUpdates, segmentUpdates);
+                    current = data;
+                }
+                flags.keySet().forEach(FlagDataStorageFactory.this::afterUpdate);
+            }
+            if (data != null) {
+                publish(data);
+            }
+            return res;
+        }
+
+        // guarded by updateLock, adds the wire format of an upserted item to the updates while mirroring
+        private boolean upsertMirrored(DataStorageTypes.Category category,
+                                       Map.Entry<String, DataStorageTypes.Item> item,
+                                       long version,
+                                       Map<String, JsonObject> updates) {
+            if (!upsertReplicated(category, item.getKey(), item.getValue(), version)) {
+                return false;
+            }
+            JsonObject json = isMirroring() ? toJson(item.getValue(), category == DataStorageTypes.FEATURES) : null;
+            if (json != null) {
+                updates.put(item.getKey(), json);
+            }
+            return true;
+        }
+
+        // guarded by updateLock
+        private boolean upsertReplicated(DataStorageTypes.Category category, String key, DataStorageTypes.Item item, Long version) {
+            if (!storage.upsert(category, key, item, version)) {
+                return false;
+            }
+            for (DataStorage replica : replicas) {
+                try {
+                    replica.upsert(category, key, item, version);
+                } catch (RuntimeException e) {
+                    logger.error("FB JAVA PROVIDER: failed to update a replica of the flag data", e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return storage.isInitialized();
+        }
+
+        @Override
+        public long getVersion() {
+            return storage.getVersion();
+        }
+
+        @Override
+        public void close() throws IOException {
+            storage.close();
+        }
+
+        private Map<DataStorageTypes.Category, Map<String, DataStorageTypes.Item>> copy(Map<DataStorageTypes.Category, Map<String, DataStorageTypes.Item>> allData) {
+            Map<DataStorageTypes.Category, Map<String, DataStorageTypes.Item>> res = new HashMap<>();
+            allData.forEach((category, items) -> res.put(category, new HashMap<>(items)));
+            return res;
+        }
+    }
+}
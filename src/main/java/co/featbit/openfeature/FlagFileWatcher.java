@@ -0,0 +1,353 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.exterior.FBClient;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Feeds an offline FeatBit client with the data-sync documents of a directory, and keeps watching it.
+ * <p>
+ * Each {@code .json} file holds a data-sync document: a {@code full} document replaces all the flags and segments,
+ * a {@code patch} document updates the flags and segments it contains, unless they are older than the current ones.
+ * The files are applied in name order at startup, then whenever they are created or modified. When a file is deleted,
+ * the remaining files are applied again from scratch; the flags are kept if no file is left.
+ * <p>
+ * The watcher merges the files into its own {@link FlagDataSet}. The first data is loaded as a full document, then
+ * only the flags and segments that changed are upserted through the storage of the client, see
+ * {@link FlagDataStorageFactory#upsertAll}, and the changed flags, with the flags referencing a changed segment, are
+ * handed to the provider as the SDK fires no change event for them. The whole data is loaded again as a full document
+ * when a flag or segment was removed, or when the provider doesn't own the storage of the client, that is when it
+ * isn't built from a {@code FBConfig.Builder}. Files are read and parsed on the watcher thread, evaluations are never
+ * blocked by an update. Files larger than {@link #MMAP_THRESHOLD} are memory-mapped.
+ */
+final class FlagFileWatcher implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FlagFileWatcher.class);
+    private static final long MMAP_THRESHOLD = 1 << 20;
+    // lets a burst of writes to the same files settle before reading them
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Path directory;
+    private final FBClient client;
+    // null if the provider doesn't own the storage of the client
+    private final FlagDataStorageFactory flagData;
+    private final Consumer<Collection<String>> flagsChanged;
+    private FlagDataSet data = FlagDataSet.EMPTY;
+    private FlagDataSet applied = FlagDataSet.EMPTY;
+    private WatchService watchService;
+    private Thread thread;
+
+    FlagFileWatcher(Path directory, FBClient client, FlagDataStorageFactory flagData, Consumer<Collection<String>> flagsChanged) {
+        this.directory = directory;
+        this.client = client;
+        this.flagData = flagData;
+        this.flagsChanged = flagsChanged;
+    }
+
+    /**
+     * Applies the files of the directory, then watches it on a background thread.
+     */
+    synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        // register before reading, so that no change is missed
+        reload(listFiles());
+        thread = new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("featbit-provider-file-watcher")
+                .build()
+                .newThread(this::run);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                SortedSet<Path> files = new TreeSet<>();
+                boolean overflow = false;
+                boolean deleted = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflow = true;
+                        } else if (!isDataFile((Path) event.context())) {
+                            continue;
+                        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            deleted = true;
+                        } else {
+                            files.add(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        logger.warn("FB JAVA PROVIDER: the flag directory {} is no longer accessible", directory);
+                        return;
+                    }
+                } while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                if (deleted) {
+                    // the items of the deleted file can't be told apart from the merged data
+                    data = FlagDataSet.EMPTY;
+                }
+                reload(overflow || deleted ? listFiles() : files);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed by the provider
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("FB JAVA PROVIDER: unexpected error while watching the flag directory {}", directory, e);
+        }
+    }
+
+    private void reload(Iterable<Path> files) {
+        for (Path file : files) {
+            try {
+                data = merge(data, read(file));
+            } catch (Exception e) {
+                // the file may still be being written, it is read again on the next change
+                logger.warn("FB JAVA PROVIDER: failed to read the flag file {}", file, e);
+            }
+        }
+        if (data == applied) {
+            return;
+        }
+        if (data.isEmpty()) {
+            if (!applied.isEmpty()) {
+                logger.info("FB JAVA PROVIDER: no flag file left in {}, keeping the current flags", directory);
+            }
+            return;
+        }
+        if (upsertChanges()) {
+            applied = data;
+        } else if (client.initializeFromExternalJson(data.toDataSyncJson())) {
+            applied = data;
+        } else {
+            logger.warn("FB JAVA PROVIDER: the flags of {} were rejected, the client must be in offline mode", directory);
+        }
+    }
+
+    // false if the data must be loaded as a full document
+    private boolean upsertChanges() {
+        if (flagData == null || applied.isEmpty()) {
+            return false;
+        }
+        List<JsonObject> flags = changes(applied.getFlags(), data.getFlags());
+        List<JsonObject> segments = changes(applied.getSegments(), data.getSegments());
+        if (flags == null || segments == null || !flagData.upsertAll(flags, segments)) {
+            return false;
+        }
+        Set<String> flagKeys = new LinkedHashSet<>();
+        flags.forEach(flag -> flagKeys.add(FlagDataSet.flagKey(flag)));
+        if (!segments.isEmpty()) {
+            data.getFlags().forEach((flagKey, flag) -> {
+                if (referencesAny(flag, segments)) {
+                    flagKeys.add(flagKey);
+                }
+            });
+        }
+        if (!flagKeys.isEmpty()) {
+            flagsChanged.accept(flagKeys);
+        }
+        return true;
+    }
+
+    // the added or updated items, null if an item was removed
+    private static List<JsonObject> changes(Map<String, JsonObject> items, Map<String, JsonObject> updated) {
+        if (!updated.keySet().containsAll(items.keySet())) {
+            return null;
+        }
+        List<JsonObject> res = new ArrayList<>();
+        updated.forEach((key, item) -> {
+            if (!item.equals(items.get(key))) {
+                res.add(item);
+            }
+        });
+        return res;
+    }
+
+    // the segment conditions hold the segment ids in their value
+    private static boolean referencesAny(JsonObject flag, List<JsonObject> segments) {
+        JsonElement rules = flag.get("rules");
+        if (rules == null || !rules.isJsonArray()) {
+            return false;
+        }
+        String json = rules.toString();
+        for (JsonObject segment : segments) {
+            if (json.contains(FlagDataSet.segmentId(segment))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Path> listFiles() throws IOException {
+        List<Path> res = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+            stream.forEach(res::add);
+        }
+        res.sort(null);
+        return res;
+    }
+
+    private static boolean isDataFile(Path fileName) {
+        return fileName.toString().endsWith(".json");
+    }
+
+    static JsonObject read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MMAP_THRESHOLD) {
+                return JsonParser.parseString(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).getAsJsonObject();
+            }
+            // decoded from the page cache as it is parsed, without copying the file to the heap
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try (Reader reader = new InputStreamReader(new ByteBufferInputStream(buffer), StandardCharsets.UTF_8)) {
+                return JsonParser.parseReader(reader).getAsJsonObject();
+            }
+        }
+    }
+
+    static FlagDataSet merge(FlagDataSet current, JsonObject doc) {
+        JsonObject data = doc.getAsJsonObject("data");
+        if (data == null) {
+            throw new IllegalArgumentException("Not a data-sync document");
+        }
+        FlagDataSet update = FlagDataSet.parse(doc);
+        JsonElement eventType = data.get("eventType");
+        if (eventType != null && eventType.isJsonPrimitive() && "full".equals(eventType.getAsString())) {
+            boolean unchanged = update.getFlags().equals(current.getFlags()) && update.getSegments().equals(current.getSegments());
+            return unchanged ? current : update;
+        }
+        Map<String, JsonObject> flags = patch(current.getFlags(), update.getFlags());
+        Map<String, JsonObject> segments = patch(current.getSegments(), update.getSegments());
+        if (flags == null && segments == null) {
+            return current;
+        }
+        return new FlagDataSet(flags == null ? current.getFlags() : flags, segments == null ? current.getSegments() : segments);
+    }
+
+    // the merged items, null if nothing changed
+    private static Map<String, JsonObject> patch(Map<String, JsonObject> items, Map<String, JsonObject> updates) {
+        Map<String, JsonObject> res = null;
+        for (Map.Entry<String, JsonObject> update : updates.entrySet()) {
+            JsonObject item = items.get(update.getKey());
+            if (Objects.equals(item, update.getValue()) || isOlder(update.getValue(), item)) {
+                continue;
+            }
+            if (res == null) {
+                res = new LinkedHashMap<>(items);
+            }
+            res.put(update.getKey(), update.getValue());
+        }
+        return res;
+    }
+
+    private static boolean isOlder(JsonObject update, JsonObject item) {
+        if (item == null) {
+            return false;
+        }
+        Instant updateTime = updatedAt(update);
+        Instant itemTime = updatedAt(item);
+        return updateTime != null && itemTime != null && updateTime.isBefore(itemTime);
+    }
+
+    private static Instant updatedAt(JsonObject item) {
+        JsonElement updatedAt = item.get("updatedAt");
+        if (updatedAt == null || !updatedAt.isJsonPrimitive()) {
+            return null;
+        }
+        try {
+            return Instant.parse(updatedAt.getAsString());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Java 8 has no stream over a buffer
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package co.featbit.openfeature;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * On-disk copy of the latest full data set, stored as a data-sync document.
+ * <p>
+ * Writes happen on a background executor and are coalesced: only the latest data set of a burst of changes is written.
+ * A temporary file is moved over the snapshot, so readers never see a partial file.
+ */
+final class FlagSnapshot implements Consumer<FlagDataSet> {
+    private static final Logger logger = LoggerFactory.getLogger(FlagSnapshot.class);
+
+    private final Path file;
+    private final Executor executor;
+    private final AtomicReference<FlagDataSet> pending = new AtomicReference<>();
+
+    FlagSnapshot(Path file, Executor executor) {
+        this.file = file;
+        this.executor = executor;
+    }
+
+    // returns null if there is no snapshot
+    static String read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void accept(FlagDataSet data) {
+        if (data.isEmpty()) {
+            return;
+        }
+        // only schedule a write if none is pending, the pending one will pick up the latest data set
+        if (pending.getAndSet(data) == null) {
+            try {
+                executor.execute(this::write);
+            } catch (RejectedExecutionException e) {
+                pending.set(null);
+            }
+        }
+    }
+
+    private void write() {
+        FlagDataSet data = pending.getAndSet(null);
+        if (data == null) {
+            return;
+        }
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tmp, data.toDataSyncJson().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            logger.warn("FB JAVA PROVIDER: failed to write the flag snapshot {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package co.featbit.openfeature;
+
+import dev.openfeature.sdk.Value;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded, lock-free set of 64-bit hashed keys seen within a time window.
+ * <p>
+ * Keys are stored in two generations of open-addressing tables of primitive longs: the table of the current window
+ * and the one of the previous window, which is dropped at the next rotation. A key is therefore reported as seen
+ * for one to two windows. When the probes of a key find no free slot, the key is reported as unseen, so that a full
+ * table lets insights through rather than losing them.
+ */
+final class InsightDeduplicator {
+    private static final int MAX_PROBES = 16;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // 0 marks a free slot
+    private static final long FREE = 0L;
+
+    private final long windowNanos;
+    private final int mask;
+    private final AtomicReference<Generation> current;
+
+    InsightDeduplicator(long windowNanos, int capacity) {
+        this.windowNanos = windowNanos;
+        // a load factor of at most 0.5 keeps the probe sequences short
+        int slots = Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1;
+        this.mask = slots - 1;
+        this.current = new AtomicReference<>(new Generation(System.nanoTime(), slots, null));
+    }
+
+    /**
+     * @return true if the key was added, false if it was already seen within the window
+     */
+    boolean add(long key, long nowNanos) {
+        long k = key == FREE ? 1L : key;
+        Generation generation = rotate(nowNanos);
+        Generation previous = generation.previous;
+        if (previous != null && previous.contains(k, mask)) {
+            return false;
+        }
+        return generation.add(k, mask);
+    }
+
+    /**
+     * @return true if the key was added within the window, without adding it
+     */
+    boolean contains(long key, long nowNanos) {
+        long k = key == FREE ? 1L : key;
+        Generation generation = rotate(nowNanos);
+        Generation previous = generation.previous;
+        return generation.contains(k, mask) || (previous != null && previous.contains(k, mask));
+    }
+
+    // the key of a user and a flag, whatever the variation
+    static long hash(String userKey, String flagKey) {
+        return mix(update(update(FNV_OFFSET_BASIS, userKey), flagKey));
+    }
+
+    static long hash(String userKey, String flagKey, Object variation) {
+        return mix(update(update(update(FNV_OFFSET_BASIS, userKey), flagKey), variation));
+    }
+
+    // the variation is hashed without converting it to a string
+    private static long update(long h, Object variation) {
+        if (variation instanceof Value) {
+            Value value = (Value) variation;
+            if (value.isStructure() || value.isList()) {
+                // the json variations come from the JsonVariationCache, which converts a raw variation of a flag
+                // into a single Value: its identity stands for the raw variation, a variation converted again
+                // is at worst reported once more
+                return update(h, System.identityHashCode(value));
+            }
+            return update(h, value.asObject());
+        }
+        if (variation instanceof String) {
+            return update(h, (String) variation);
+        }
+        if (variation instanceof Boolean) {
+            return update(h, (Boolean) variation ? 1L : 2L);
+        }
+        if (variation instanceof Number) {
+            return update(h, Double.doubleToLongBits(((Number) variation).doubleValue()));
+        }
+        return update(h, variation == null ? 0L : System.identityHashCode(variation));
+    }
+
+    private static long update(long h, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            h ^= (value >>> shift) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    // 64-bit FNV-1a on the length and the UTF-16 chars of the string, the length separates the strings
+    private static long update(long h, String s) {
+        int length = s.length();
+        for (int shift = 0; shift < 32; shift += 8) {
+            h ^= (length >>> shift) & 0xff;
+            h *= FNV_PRIME;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            h ^= c & 0xff;
+            h *= FNV_PRIME;
+            h ^= c >>> 8;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    // the finalizer of MurmurHash3, like CompactKeyList
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private Generation rotate(long nowNanos) {
+        Generation generation = current.get();
+        while (nowNanos - generation.start >= windowNanos) {
+            // the current generation is outdated too after two windows without any key
+            Generation next = new Generation(nowNanos, mask + 1, nowNanos - generation.start < 2 * windowNanos ? generation : null);
+            if (current.compareAndSet(generation, next)) {
+                // only keep one previous generation
+                generation.previous = null;
+                return next;
+            }
+            generation = current.get();
+        }
+        return generation;
+    }
+
+    private static final class Generation {
+        private final long start;
+        private final AtomicLongArray slots;
+        private volatile Generation previous;
+
+        private Generation(long start, int size, Generation previous) {
+            this.start = start;
+            this.slots = new AtomicLongArray(size);
+            this.previous = previous;
+        }
+
+        private boolean contains(long key, int mask) {
+            int index = (int) key & mask;
+            for (int i = 0; i < MAX_PROBES; i++) {
+                long slot = slots.get((index + i) & mask);
+                if (slot == key) {
+                    return true;
+                }
+                if (slot == FREE) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private boolean add(long key, int mask) {
+            int index = (int) key & mask;
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int position = (index + i) & mask;
+                long slot = slots.get(position);
+                if (slot == key) {
+                    return false;
+                }
+                if (slot == FREE) {
+                    if (slots.compareAndSet(position, FREE, key)) {
+                        return true;
+                    }
+                    // lost the race for the slot, check what the winner wrote
+                    if (slots.get(position) == key) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether an evaluation is reported to FeatBit insights: an evaluation is deduplicated if the same user got
+ * the same variation of the flag within the window, then sampled with the rate of the flag.
+ * Every decision is counted per flag.
+ * <p>
+ * The users who got any variation of a flag are remembered too, so that the provider can tell before evaluating
+ * whether an evaluation is likely to be reported: for a user not seen yet, it samples first with {@link #sample(String)},
+ * evaluates once on the client that matches the decision, then {@link #record records} it.
+ */
+final class InsightFilter {
+    private final InsightDeduplicator deduplicator;
+    private final double defaultSamplingRate;
+    private final Map<String, Double> samplingRates;
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    InsightFilter(Duration window, int capacity, double defaultSamplingRate, Map<String, Double> samplingRates) {
+        this.deduplicator = window.isZero() ? null : new InsightDeduplicator(window.toNanos(), capacity);
+        this.defaultSamplingRate = defaultSamplingRate;
+        this.samplingRates = ImmutableMap.copyOf(samplingRates);
+    }
+
+    boolean shouldSend(String flagKey, String userKey, Object variation) {
+        Counters flagCounters = counters(flagKey);
+        flagCounters.evaluations.increment();
+        if (deduplicator != null) {
+            long now = System.nanoTime();
+            deduplicator.add(InsightDeduplicator.hash(userKey, flagKey), now);
+            if (!deduplicator.add(InsightDeduplicator.hash(userKey, flagKey, variation), now)) {
+                flagCounters.deduplicated.increment();
+                return false;
+            }
+        }
+        if (!sample(flagKey)) {
+            flagCounters.sampledOut.increment();
+            return false;
+        }
+        flagCounters.sent.increment();
+        return true;
+    }
+
+    // true if the user got any variation of the flag within the window
+    boolean isSeen(String flagKey, String userKey) {
+        return deduplicator != null && deduplicator.contains(InsightDeduplicator.hash(userKey, flagKey), System.nanoTime());
+    }
+
+    // true if an evaluation that is not deduplicated is reported
+    boolean sample(String flagKey) {
+        double rate = samplingRates.getOrDefault(flagKey, defaultSamplingRate);
+        return rate >= 1D || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    // an evaluation of a user not seen yet, reported or not as decided by sample(String)
+    void record(String flagKey, String userKey, Object variation, boolean sent) {
+        Counters flagCounters = counters(flagKey);
+        flagCounters.evaluations.increment();
+        if (deduplicator != null) {
+            long now = System.nanoTime();
+            deduplicator.add(InsightDeduplicator.hash(userKey, flagKey), now);
+            deduplicator.add(InsightDeduplicator.hash(userKey, flagKey, variation), now);
+        }
+        (sent ? flagCounters.sent : flagCounters.sampledOut).increment();
+    }
+
+    // an evaluation that could not be filtered, its insight is sent anyway
+    void sent(String flagKey) {
+        Counters flagCounters = counters(flagKey);
+        flagCounters.evaluations.increment();
+        flagCounters.sent.increment();
+    }
+
+    InsightStatistics stats() {
+        ImmutableMap.Builder<String, InsightStatistics.FlagInsights> res = ImmutableMap.builder();
+        counters.forEach((flagKey, flagCounters) -> res.put(flagKey, new InsightStatistics.FlagInsights(
+                flagCounters.evaluations.sum(),
+                flagCounters.sent.sum(),
+                flagCounters.deduplicated.sum(),
+                flagCounters.sampledOut.sum())));
+        return new InsightStatistics(res.build());
+    }
+
+    private Counters counters(String flagKey) {
+        // get first, computeIfAbsent locks the bin on Java 8 even if the key is present
+        Counters res = counters.get(flagKey);
+        return res != null ? res : counters.computeIfAbsent(flagKey, key -> new Counters());
+    }
+
+    private static final class Counters {
+        private final LongAdder evaluations = new LongAdder();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder deduplicated = new LongAdder();
+        private final LongAdder sampledOut = new LongAdder();
+    }
+}
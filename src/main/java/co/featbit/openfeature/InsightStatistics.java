@@ -0,0 +1,70 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+/**
+ * Point-in-time counters of the insights of the provider.
+ * <p>
+ * Per flag key, the counters of the insight deduplication and sampling: for every flag, the evaluations are either
+ * sent, deduplicated or sampled out, so that the totals reported to FeatBit can be reconciled with the local
+ * evaluation counts.
+ */
+public final class InsightStatistics {
+    static final InsightStatistics EMPTY = new InsightStatistics(ImmutableMap.of());
+
+    private final Map<String, FlagInsights> flags;
+
+    InsightStatistics(Map<String, FlagInsights> flags) {
+        this.flags = ImmutableMap.copyOf(flags);
+    }
+
+    public Map<String, FlagInsights> getFlags() {
+        return flags;
+    }
+
+    public FlagInsights getFlag(String flagKey) {
+        return flags.get(flagKey);
+    }
+
+    public static final class FlagInsights {
+        private final long evaluationCount;
+        private final long sentCount;
+        private final long deduplicatedCount;
+        private final long sampledOutCount;
+
+        FlagInsights(long evaluationCount, long sentCount, long deduplicatedCount, long sampledOutCount) {
+            this.evaluationCount = evaluationCount;
+            this.sentCount = sentCount;
+            this.deduplicatedCount = deduplicatedCount;
+            this.sampledOutCount = sampledOutCount;
+        }
+
+        public long getEvaluationCount() {
+            return evaluationCount;
+        }
+
+        public long getSentCount() {
+            return sentCount;
+        }
+
+        public long getDeduplicatedCount() {
+            return deduplicatedCount;
+        }
+
+        public long getSampledOutCount() {
+            return sampledOutCount;
+        }
+
+        @Override
+        public String toString() {
+            return "FlagInsights{" +
+                    "evaluationCount=" + evaluationCount +
+                    ", sentCount=" + sentCount +
+                    ", deduplicatedCount=" + deduplicatedCount +
+                    ", sampledOutCount=" + sampledOutCount +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package co.featbit.openfeature;
+
+import com.google.gson.JsonParseException;
+import dev.openfeature.sdk.Value;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Json variations converted once into immutable {@link Value}s, per flag and raw variation.
+ * <p>
+ * The raw variation identifies the variation, so an entry can never be stale; the entries of a flag are dropped
+ * when the flag changes only to release the variations that no longer exist.
+ */
+final class JsonVariationCache {
+    // flags hold a handful of variations, this only guards against unbounded growth
+    private static final int MAX_VARIATIONS_PER_FLAG = 64;
+
+    private final Converter.JsonValueDecoder jsonValueDecoder = Converter.JsonValueDecoder.INSTANCE;
+    private final ConcurrentMap<String, ConcurrentMap<String, Value>> flags = new ConcurrentHashMap<>();
+
+    // returns null if the variation is not valid json
+    Value get(String flagKey, String variation) {
+        ConcurrentMap<String, Value> variations = flags.computeIfAbsent(flagKey, k -> new ConcurrentHashMap<>());
+        Value value = variations.get(variation);
+        if (value == null) {
+            value = decode(variation);
+            if (value != null && variations.size() < MAX_VARIATIONS_PER_FLAG) {
+                variations.putIfAbsent(variation, value);
+            }
+        }
+        return value;
+    }
+
+    void invalidate(String flagKey) {
+        flags.remove(flagKey);
+    }
+
+    private Value decode(String variation) {
+        try {
+            return jsonValueDecoder.decode(variation);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import co.featbit.server.exterior.FBClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the OpenFeature tracking events to FeatBit as custom metrics, off the caller's path.
+ * <p>
+ * Events go into a lock-free queue bounded by a semaphore of free slots, and the queue is drained by a single task
+ * at a time on a background executor, in batches. The {@link TrackingBackpressure}
+ * decides what happens to an event when the queue is full. Dropped and sampled out events are counted, see
+ * {@link TrackingStatistics}.
+ * <p>
+ * {@code FBClient#trackMetric} itself only queues the event for the event processor of the SDK, which sends it
+ * asynchronously. This queue moves the rest off the caller's path: the SDK call and its synchronization with the
+ * other events, and it bounds the events waiting for the SDK with a backpressure policy of the provider.
+ */
+final class MetricTracker {
+    private static final Logger logger = LoggerFactory.getLogger(MetricTracker.class);
+    private static final int DRAIN_BATCH_SIZE = 256;
+
+    private final FBClient client;
+    private final Executor executor;
+    private final int capacity;
+    private final TrackingBackpressure backpressure;
+    private final long blockTimeoutNanos;
+    private final Queue<Metric> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore freeSlots;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private volatile boolean closed;
+
+    MetricTracker(FBClient client, Executor executor, int capacity, TrackingBackpressure backpressure, Duration blockTimeout) {
+        this.client = client;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.backpressure = backpressure;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.freeSlots = new Semaphore(capacity);
+    }
+
+    /**
+     * @param value the value of the metric, null for the default value of FeatBit
+     */
+    void track(FBUser user, String eventName, Double value) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        if (backpressure == TrackingBackpressure.SAMPLE && isSampledOut()) {
+            sampledOut.increment();
+            return;
+        }
+        if (!acquireSlot()) {
+            dropped.increment();
+            return;
+        }
+        queue.offer(new Metric(user, eventName, value));
+        scheduleDrain();
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    long sampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    TrackingStatistics stats() {
+        return new TrackingStatistics(capacity - freeSlots.availablePermits(), droppedCount(), sampledOutCount());
+    }
+
+    /**
+     * Stops accepting events and sends the pending ones on the calling thread, within the timeout.
+     *
+     * @return the number of events left unsent
+     */
+    int close(Duration timeout) {
+        closed = true;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!queue.isEmpty() && System.nanoTime() - deadline < 0) {
+            send(DRAIN_BATCH_SIZE);
+        }
+        int left = queue.size();
+        if (left > 0) {
+            logger.warn("FB JAVA PROVIDER: {} tracking events were not sent within {}", left, timeout);
+            queue.clear();
+            dropped.add(left);
+        }
+        return left;
+    }
+
+    // the fuller the queue, the fewer events are kept
+    private boolean isSampledOut() {
+        int free = freeSlots.availablePermits();
+        int half = capacity / 2;
+        return free < half && ThreadLocalRandom.current().nextInt(half) >= free;
+    }
+
+    private boolean acquireSlot() {
+        if (freeSlots.tryAcquire()) {
+            return true;
+        }
+        if (backpressure != TrackingBackpressure.BLOCK) {
+            return false;
+        }
+        try {
+            return freeSlots.tryAcquire(blockTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            // the provider is shutting down, close sends the pending events
+            if (!closed) {
+                int size = queue.size();
+                queue.clear();
+                freeSlots.release(size);
+                dropped.add(size);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            send(DRAIN_BATCH_SIZE);
+        } finally {
+            draining.set(false);
+        }
+        // the rest of the queue, or an event offered while the drain was finishing
+        if (!queue.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void send(int batchSize) {
+        Metric metric;
+        for (int i = 0; i < batchSize && (metric = queue.poll()) != null; i++) {
+            freeSlots.release();
+            try {
+                if (metric.value == null) {
+                    client.trackMetric(metric.user, metric.eventName);
+                } else {
+                    client.trackMetric(metric.user, metric.eventName, metric.value);
+                }
+            } catch (Exception e) {
+                logger.debug("FB JAVA PROVIDER: failed to track the event {}", metric.eventName, e);
+            }
+        }
+    }
+
+    private static final class Metric {
+        private final FBUser user;
+        private final String eventName;
+        private final Double value;
+
+        private Metric(FBUser user, String eventName, Double value) {
+            this.user = user;
+            this.eventName = eventName;
+            this.value = value;
+        }
+    }
+}
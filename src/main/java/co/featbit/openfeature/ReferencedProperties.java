@@ -0,0 +1,77 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The user properties referenced by the current flags and segments: the properties of the rule conditions,
+ * and the dispatch keys of the rules and fallthroughs, which may bucket users by a property.
+ * <p>
+ * Before any flag data is known, {@link #get()} returns null and contexts are converted in full.
+ */
+final class ReferencedProperties implements Consumer<FlagDataSet> {
+    private final Runnable onChange;
+    private volatile Set<String> properties;
+
+    ReferencedProperties(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    Set<String> get() {
+        return properties;
+    }
+
+    @Override
+    public void accept(FlagDataSet data) {
+        if (data.isEmpty()) {
+            return;
+        }
+        Set<String> res = of(data);
+        if (!res.equals(properties)) {
+            properties = res;
+            onChange.run();
+        }
+    }
+
+    static Set<String> of(FlagDataSet data) {
+        ImmutableSet.Builder<String> res = ImmutableSet.builder();
+        for (JsonObject flag : data.getFlags().values()) {
+            addRules(res, flag.get("rules"));
+            JsonElement fallthrough = flag.get("fallthrough");
+            if (fallthrough != null && fallthrough.isJsonObject()) {
+                addString(res, fallthrough.getAsJsonObject().get("dispatchKey"));
+            }
+        }
+        for (JsonObject segment : data.getSegments().values()) {
+            addRules(res, segment.get("rules"));
+        }
+        return res.build();
+    }
+
+    private static void addRules(ImmutableSet.Builder<String> res, JsonElement rules) {
+        if (rules == null || !rules.isJsonArray()) {
+            return;
+        }
+        for (JsonElement rule : rules.getAsJsonArray()) {
+            JsonObject ruleObject = rule.getAsJsonObject();
+            addString(res, ruleObject.get("dispatchKey"));
+            JsonElement conditions = ruleObject.get("conditions");
+            if (conditions != null && conditions.isJsonArray()) {
+                for (JsonElement condition : (JsonArray) conditions) {
+                    addString(res, condition.getAsJsonObject().get("property"));
+                }
+            }
+        }
+    }
+
+    private static void addString(ImmutableSet.Builder<String> res, JsonElement value) {
+        if (value != null && value.isJsonPrimitive()) {
+            res.add(value.getAsString());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.Factory;
+import co.featbit.server.exterior.DataStorage;
+import co.featbit.server.exterior.DataStorageFactory;
+import co.featbit.server.exterior.FBClient;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Offline copy of the live client, which evaluates flags without sending insights.
+ * <p>
+ * Its data storage is a replica of the live client's one, see {@link FlagDataStorageFactory#addReplica(DataStorage)}:
+ * each change of the live client is applied to it on the SDK's update thread, so the copy is never rebuilt nor
+ * replaced. Until the live client has data, {@link #get()} returns null and the caller must fall back to the live client.
+ */
+final class ShadowClient {
+    private final FlagDataStorageFactory flagData;
+    private final Consumer<FBClient> closer;
+    private final DataStorage storage;
+    private final FBClient client;
+    private volatile boolean closed;
+
+    ShadowClient(FlagDataStorageFactory flagData,
+                 Function<DataStorageFactory, FBClient> offlineClientFactory,
+                 Consumer<FBClient> closer) {
+        this.flagData = flagData;
+        this.closer = closer;
+        AtomicReference<DataStorage> replica = new AtomicReference<>();
+        // the client creates its storage when it is built
+        this.client = offlineClientFactory.apply(context -> {
+            DataStorage res = Factory.inMemoryDataStorageFactory().createDataStorage(context);
+            replica.set(res);
+            return res;
+        });
+        this.storage = replica.get();
+        flagData.addReplica(storage);
+    }
+
+    // null until the live client has data, or once closed
+    FBClient get() {
+        return !closed && storage.isInitialized() ? client : null;
+    }
+
+    // evaluations already running on the shadow client may complete on the closed client, as on the live one
+    void close() {
+        closed = true;
+        flagData.removeReplica(storage);
+        closer.accept(client);
+    }
+}
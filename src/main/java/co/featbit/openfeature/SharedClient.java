@@ -0,0 +1,70 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBClientImp;
+import co.featbit.server.FBConfig;
+import co.featbit.server.Factory;
+import co.featbit.server.exterior.DataStorageFactory;
+import co.featbit.server.exterior.FBClient;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The FeatBit client of a provider, along with the data storage the provider observes the flags through.
+ * The client is closed when the provider releases it, the {@link FBProviderRegistry} is notified so that the sdk key
+ * gets a new provider.
+ */
+final class SharedClient {
+    private static final Consumer<SharedClient> NO_OP = shared -> {
+    };
+
+    private final FBClient client;
+    private final FlagDataStorageFactory flagData;
+    private final Consumer<SharedClient> onClosed;
+    // guarded by this
+    private boolean released;
+
+    private SharedClient(FBClient client, FlagDataStorageFactory flagData, Consumer<SharedClient> onClosed) {
+        this.client = client;
+        this.flagData = flagData;
+        this.onClosed = onClosed;
+    }
+
+    static SharedClient create(String sdkKey, FBConfig config) {
+        return new SharedClient(new FBClientImp(sdkKey, config), null, NO_OP);
+    }
+
+    static SharedClient create(String sdkKey, FBConfig.Builder configBuilder, DataStorageFactory dataStorage) {
+        return create(sdkKey, configBuilder, dataStorage, NO_OP);
+    }
+
+    // the provider observes the flag data through its own data storage, which wraps the given one
+    static SharedClient create(String sdkKey,
+                               FBConfig.Builder configBuilder,
+                               DataStorageFactory dataStorage,
+                               Consumer<SharedClient> onClosed) {
+        FlagDataStorageFactory flagData = new FlagDataStorageFactory(dataStorage == null ? Factory.inMemoryDataStorageFactory() : dataStorage);
+        FBClient client = new FBClientImp(sdkKey, configBuilder.dataStorageFactory(flagData).build());
+        return new SharedClient(client, flagData, onClosed);
+    }
+
+    FBClient client() {
+        return client;
+    }
+
+    // null if the client was built from a FBConfig
+    FlagDataStorageFactory flagData() {
+        return flagData;
+    }
+
+    void release() throws IOException {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        onClosed.accept(this);
+        client.close();
+    }
+}
@@ -0,0 +1,22 @@
+package co.featbit.openfeature;
+
+/**
+ * What {@link FBProvider#track} does with an event when the tracking queue is full.
+ *
+ * @see FBProviderOptions.Builder#trackingBackpressure(TrackingBackpressure)
+ */
+public enum TrackingBackpressure {
+    /**
+     * Drops the event.
+     */
+    DROP,
+    /**
+     * Waits for free space in the queue, at most the tracking block timeout, then drops the event.
+     */
+    BLOCK,
+    /**
+     * Keeps all the events while the queue is less than half full, then fewer and fewer as it fills up,
+     * and drops the event if the queue is full.
+     */
+    SAMPLE
+}
@@ -0,0 +1,48 @@
+package co.featbit.openfeature;
+
+/**
+ * Point-in-time counters of the tracking events of the provider, see {@link TrackingBackpressure}.
+ */
+public final class TrackingStatistics {
+    static final TrackingStatistics EMPTY = new TrackingStatistics(0L, 0L, 0L);
+
+    private final long pendingCount;
+    private final long droppedCount;
+    private final long sampledOutCount;
+
+    TrackingStatistics(long pendingCount, long droppedCount, long sampledOutCount) {
+        this.pendingCount = pendingCount;
+        this.droppedCount = droppedCount;
+        this.sampledOutCount = sampledOutCount;
+    }
+
+    /**
+     * @return the number of events waiting in the tracking queue
+     */
+    public long getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * @return the number of events lost because the queue was full or the provider was shut down
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the number of events left out by {@link TrackingBackpressure#SAMPLE}
+     */
+    public long getSampledOutCount() {
+        return sampledOutCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TrackingStatistics{" +
+                "pendingCount=" + pendingCount +
+                ", droppedCount=" + droppedCount +
+                ", sampledOutCount=" + sampledOutCount +
+                '}';
+    }
+}
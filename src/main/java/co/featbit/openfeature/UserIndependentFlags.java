@@ -0,0 +1,112 @@
+package co.featbit.openfeature;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import dev.openfeature.sdk.ProviderEvaluation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The flags whose evaluation doesn't depend on the user: disabled flags, and enabled flags without target users nor
+ * rules that serve a single variation to 100% of the users.
+ * <p>
+ * The evaluations of such a flag are kept per requested type, the first one computed by the FeatBit client.
+ * The entry of a flag is removed on the SDK's update thread before the client's storage changes, and the flag is
+ * reclassified right after, so an evaluation computed with the old flag is never served for the new one: in between,
+ * the flag is evaluated by the client like any other.
+ */
+final class UserIndependentFlags implements FlagDataStorageFactory.FlagUpdateListener {
+    private final ConcurrentMap<String, Entry> flags = new ConcurrentHashMap<>();
+
+    // null if the flag may depend on the user
+    Entry get(String flagKey) {
+        return flags.get(flagKey);
+    }
+
+    @Override
+    public void beforeUpdate(String flagKey) {
+        if (flagKey == null) {
+            flags.clear();
+        } else {
+            flags.remove(flagKey);
+        }
+    }
+
+    @Override
+    public void afterUpdate(FlagDataSet data, String flagKey) {
+        if (flagKey == null) {
+            reclassifyAll(data);
+        } else {
+            reclassify(data, flagKey);
+        }
+    }
+
+    void reclassifyAll(FlagDataSet data) {
+        flags.keySet().retainAll(data.getFlags().keySet());
+        data.getFlags().forEach(this::reclassify);
+    }
+
+    void reclassify(FlagDataSet data, String flagKey) {
+        reclassify(flagKey, data.getFlags().get(flagKey));
+    }
+
+    private void reclassify(String flagKey, JsonObject flag) {
+        if (flag != null && isUserIndependent(flag)) {
+            flags.put(flagKey, new Entry());
+        } else {
+            flags.remove(flagKey);
+        }
+    }
+
+    static boolean isUserIndependent(JsonObject flag) {
+        if (!getBoolean(flag, "isEnabled")) {
+            return true;
+        }
+        for (JsonElement target : getArray(flag, "targetUsers")) {
+            if (target.isJsonObject() && getArray(target.getAsJsonObject(), "keyIds").size() > 0) {
+                return false;
+            }
+        }
+        if (getArray(flag, "rules").size() > 0) {
+            return false;
+        }
+        JsonElement fallthrough = flag.get("fallthrough");
+        if (fallthrough == null || !fallthrough.isJsonObject()) {
+            return false;
+        }
+        JsonArray variations = getArray(fallthrough.getAsJsonObject(), "variations");
+        if (variations.size() != 1 || !variations.get(0).isJsonObject()) {
+            return false;
+        }
+        JsonArray rollout = getArray(variations.get(0).getAsJsonObject(), "rollout");
+        return rollout.size() == 2
+                && rollout.get(0).isJsonPrimitive() && rollout.get(0).getAsDouble() <= 0D
+                && rollout.get(1).isJsonPrimitive() && rollout.get(1).getAsDouble() >= 1D;
+    }
+
+    private static boolean getBoolean(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value != null && value.isJsonPrimitive() && value.getAsBoolean();
+    }
+
+    private static JsonArray getArray(JsonObject json, String name) {
+        JsonElement value = json.get(name);
+        return value != null && value.isJsonArray() ? value.getAsJsonArray() : new JsonArray();
+    }
+
+    static final class Entry {
+        private final Map<EvaluationCache.Type, ProviderEvaluation<?>> evaluations = new ConcurrentHashMap<>(4);
+
+        @SuppressWarnings("unchecked")
+        <T> ProviderEvaluation<T> get(EvaluationCache.Type type) {
+            return (ProviderEvaluation<T>) evaluations.get(type);
+        }
+
+        <T> void put(EvaluationCache.Type type, ProviderEvaluation<T> evaluation) {
+            evaluations.put(type, evaluation);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import co.featbit.server.FBConfig;
+import com.google.common.collect.ImmutableSet;
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.ImmutableContext;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Set;
+
+import static co.featbit.server.EvaluationReason.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributeProjectionTest extends BaseTest {
+
+    private static FBProvider provider;
+
+    private final EvaluationContext wideUser3 = new ImmutableContext("test-user-3", new HashMap<String, Value>() {{
+        put("name", new Value("test-user-3"));
+        put("country", new Value("cn"));
+        put("major", new Value("cs"));
+        put("device", new Value("android"));
+        put("user-agent", new Value("Mozilla/5.0"));
+        put("tenant", new Value("tenant-1"));
+    }});
+
+    @BeforeAll
+    static void init() throws IOException {
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        FBProviderOptions options = new FBProviderOptions.Builder()
+                .attributeProjection(true)
+                .contextCacheSize(100)
+                .build();
+        provider = new FBProvider("env-secret", config, options);
+        provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testReferencedProperties() throws IOException {
+        Set<String> properties = ReferencedProperties.of(FlagDataSet.parse(readResource("fbclient_test_data.json")));
+        assertTrue(properties.containsAll(ImmutableSet.of("country", "major", "salary", "keyId")));
+        assertFalse(properties.contains("device"));
+    }
+
+    @Test
+    void testProjectedConversion() {
+        FBUser user = Converter.EvaluationContextConverter.INSTANCE.toFBUser(wideUser3, ImmutableSet.of("major", "phone"));
+        assertEquals("test-user-3", user.getKey());
+        assertEquals("test-user-3", user.getUserName());
+        assertEquals("cs", user.getProperty("major"));
+        assertNull(user.getProperty("device"));
+        assertNull(user.getProperty("country"));
+    }
+
+    @Test
+    void testProjectedConversionWithoutTargetingKey() {
+        EvaluationContext ctx = new ImmutableContext(new HashMap<String, Value>() {{
+            put("keyid", new Value("test-user-3"));
+            put("username", new Value("user name"));
+        }});
+        FBUser user = Converter.EvaluationContextConverter.INSTANCE.toFBUser(ctx, ImmutableSet.of());
+        assertEquals("test-user-3", user.getKey());
+        assertEquals("user name", user.getUserName());
+        assertThrows(IllegalArgumentException.class,
+                () -> Converter.EvaluationContextConverter.INSTANCE.toFBUser(new ImmutableContext(), ImmutableSet.of()));
+    }
+
+    @Test
+    void testEvaluationWithProjection() {
+        assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+        assertEquals(REASON_TARGET_MATCH, provider.getBooleanEvaluation("ff-test-bool", false, user2).getReason());
+        assertEquals(33, provider.getIntegerEvaluation("ff-test-number", -1, user2).getValue());
+        assertEquals("teamA", provider.getStringEvaluation("ff-test-seg", "error", wideUser3).getValue());
+        assertEquals(REASON_RULE_MATCH, provider.getStringEvaluation("ff-test-seg", "error", wideUser3).getReason());
+        assertEquals("teamB", provider.getStringEvaluation("ff-test-seg", "error", user4).getValue());
+    }
+
+}
@@ -41,12 +41,16 @@ abstract class BaseTest {
     }});
 
     protected static FBProvider initClientInOfflineMode() throws IOException {
+        return initClientInOfflineMode(FBProviderOptions.DEFAULT);
+    }
+
+    protected static FBProvider initClientInOfflineMode(FBProviderOptions options) throws IOException {
         FBConfig config = new FBConfig.Builder()
                 .offline(true)
                 .streamingURL("ws://fake-url")
                 .eventURL("http://fake-url")
                 .build();
-        FBProvider provider = new FBProvider("env-secret", config);
+        FBProvider provider = new FBProvider("env-secret", config, options);
         provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
         return provider;
     }
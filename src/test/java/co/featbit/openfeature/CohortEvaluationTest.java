@@ -0,0 +1,141 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import dev.openfeature.sdk.ErrorCode;
+import dev.openfeature.sdk.EvaluationContext;
+import dev.openfeature.sdk.ImmutableContext;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CohortEvaluationTest extends BaseTest {
+
+    private static final Set<String> FLAG_KEYS = ImmutableSet.of("ff-test-bool", "ff-test-seg");
+
+    private static FBProvider provider;
+
+    @BeforeAll
+    static void init() throws IOException {
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        provider = new FBProvider("env-secret", config, FBProviderOptions.DEFAULT);
+        provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    private void assertCohort(CohortOptions options) {
+        List<EvaluationContext> contexts = ImmutableList.of(user1, user2, user3, user4);
+        try (Stream<CohortEvaluation> results = provider.evaluateCohort(contexts.iterator(), FLAG_KEYS, options)) {
+            List<CohortEvaluation> res = results.collect(Collectors.toList());
+            assertEquals(4, res.size());
+            for (int i = 0; i < contexts.size(); i++) {
+                assertSame(contexts.get(i), res.get(i).getContext());
+                assertEquals(ImmutableList.copyOf(FLAG_KEYS), ImmutableList.copyOf(res.get(i).getEvaluations().keySet()));
+            }
+            assertTrue(res.get(0).getEvaluation("ff-test-bool").getValue().asBoolean());
+            assertEquals("teamA", res.get(0).getEvaluation("ff-test-seg").getValue().asString());
+            assertEquals("teamB", res.get(1).getEvaluation("ff-test-seg").getValue().asString());
+            assertEquals("teamA", res.get(2).getEvaluation("ff-test-seg").getValue().asString());
+            assertEquals("teamB", res.get(3).getEvaluation("ff-test-seg").getValue().asString());
+        }
+    }
+
+    @Test
+    void testEvaluateCohort() {
+        assertCohort(new CohortOptions.Builder().parallelism(2).maxInFlight(3).build());
+    }
+
+    @Test
+    void testEvaluateCohortWithoutInsights() {
+        assertCohort(new CohortOptions.Builder().parallelism(2).sendInsights(false).build());
+    }
+
+    @Test
+    void testInvalidContext() {
+        Iterator<EvaluationContext> contexts = ImmutableList.<EvaluationContext>of(new ImmutableContext(new HashMap<String, Value>())).iterator();
+        try (Stream<CohortEvaluation> results = provider.evaluateCohort(contexts, FLAG_KEYS)) {
+            CohortEvaluation res = results.findFirst().orElseThrow(AssertionError::new);
+            assertEquals(ErrorCode.TARGETING_KEY_MISSING, res.getEvaluation("ff-test-bool").getErrorCode());
+            // the evaluations are mutable and must not be shared
+            assertNotSame(res.getEvaluation("ff-test-bool"), res.getEvaluation("ff-test-seg"));
+            res.getEvaluation("ff-test-bool").setErrorCode(ErrorCode.GENERAL);
+            assertEquals(ErrorCode.TARGETING_KEY_MISSING, res.getEvaluation("ff-test-seg").getErrorCode());
+        }
+    }
+
+    @Test
+    void testCohortKeepsTheSnapshotClientOpen(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("snapshot.json");
+        Files.write(file, readResource("fbclient_test_data.json").getBytes(StandardCharsets.UTF_8));
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        FBProvider bootstrapped = new FBProvider("env-secret", config, new FBProviderOptions.Builder().snapshotFile(file).build());
+        try {
+            bootstrapped.initialize(null);
+            Iterator<EvaluationContext> contexts = IntStream.range(0, 100)
+                    .mapToObj(i -> user1)
+                    .iterator();
+            CohortOptions options = new CohortOptions.Builder().parallelism(2).maxInFlight(10).build();
+            try (Stream<CohortEvaluation> results = bootstrapped.evaluateCohort(contexts, FLAG_KEYS, options)) {
+                Iterator<CohortEvaluation> iterator = results.iterator();
+                assertTrue(iterator.next().getEvaluation("ff-test-bool").getValue().asBoolean());
+                // the first sync releases the snapshot while the cohort runs on it
+                assertTrue(bootstrapped.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json")));
+                int count = 1;
+                while (iterator.hasNext()) {
+                    ProviderEvaluation<Value> res = iterator.next().getEvaluation("ff-test-bool");
+                    assertNull(res.getErrorCode());
+                    assertTrue(res.getValue().asBoolean());
+                    count++;
+                }
+                assertEquals(100, count);
+            }
+        } finally {
+            bootstrapped.shutdown();
+        }
+    }
+
+    @Test
+    void testContextsAreReadLazily() {
+        int[] read = new int[1];
+        Iterator<EvaluationContext> contexts = IntStream.range(0, 100_000)
+                .<EvaluationContext>mapToObj(i -> {
+                    read[0]++;
+                    return new ImmutableContext("user-" + i);
+                })
+                .iterator();
+        CohortOptions options = new CohortOptions.Builder().parallelism(2).maxInFlight(10).build();
+        try (Stream<CohortEvaluation> results = provider.evaluateCohort(contexts, FLAG_KEYS, options)) {
+            assertEquals(5, results.limit(5).count());
+        }
+        assertTrue(read[0] <= 20);
+    }
+
+}
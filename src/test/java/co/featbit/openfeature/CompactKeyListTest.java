@@ -0,0 +1,190 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactKeyListTest extends BaseTest {
+
+    @Test
+    void testMembership() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            keys.add("user-" + i);
+        }
+        keys.add("utilisateur-é");
+        for (boolean offHeap : new boolean[]{false, true}) {
+            for (boolean bloomFilter : new boolean[]{false, true}) {
+                CompactKeyList list = CompactKeyList.of(keys, offHeap, bloomFilter);
+                assertEquals(keys.size(), list.size());
+                for (String key : keys) {
+                    assertTrue(list.contains(key), key);
+                    assertEquals(key, list.get(list.indexOf(key)));
+                }
+                assertTrue(list.contains("utilisateur-é"));
+                assertFalse(list.contains("user-10000"));
+                assertFalse(list.contains("user-"));
+                assertFalse(list.contains(42));
+                assertFalse(list.contains(null));
+                assertEquals(keys.size(), list.stream().distinct().count());
+            }
+        }
+    }
+
+    @Test
+    void testDuplicatesAndEmptyList() {
+        CompactKeyList list = CompactKeyList.of(Arrays.asList("a", "b", "a"), false, true);
+        assertEquals(3, list.size());
+        assertTrue(list.contains("a"));
+        assertNotEquals(list.indexOf("a"), list.lastIndexOf("a"));
+        CompactKeyList empty = CompactKeyList.of(ImmutableList.of(), false, true);
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.contains("a"));
+        assertThrows(IndexOutOfBoundsException.class, () -> empty.get(0));
+    }
+
+    @Test
+    void testKeepsTheOrder() {
+        List<String> keys = Arrays.asList("c", "a", "b", "a");
+        CompactKeyList list = CompactKeyList.of(keys, false, true);
+        assertEquals(keys, new ArrayList<>(list));
+        assertEquals(1, list.indexOf("a"));
+        assertEquals(3, list.lastIndexOf("a"));
+        assertEquals(-1, list.indexOf("d"));
+    }
+
+    @Test
+    void testCompactModel() {
+        CompactDataStorageFactory factory = new CompactDataStorageFactory.Builder().minListSize(3).build();
+        Segment segment = new Segment(Arrays.asList("a", "b", "c"), Arrays.asList("a", "b"), Arrays.asList("x", "y", "z"));
+        factory.compact(segment);
+        assertTrue(segment.included instanceof CompactKeyList);
+        assertFalse(segment.excluded instanceof CompactKeyList);
+        // not a membership list
+        assertFalse(segment.tags instanceof CompactKeyList);
+        assertTrue(segment.included.contains("b"));
+
+        Flag flag = new Flag(ImmutableList.of(new TargetUser(Arrays.asList("d", "e", "f"))));
+        factory.compact(flag);
+        assertTrue(flag.targetUsers.get(0).keyIds instanceof CompactKeyList);
+        assertEquals(2, factory.getCompactedListCount());
+    }
+
+    @Test
+    void testUnknownModelIsStoredAsItIs() {
+        CompactDataStorageFactory factory = new CompactDataStorageFactory.Builder().minListSize(3).build();
+        Unknown unknown = new Unknown(Arrays.asList("a", "b", "c"));
+        factory.compact(unknown);
+        assertFalse(unknown.users instanceof CompactKeyList);
+        assertEquals(0, factory.getCompactedListCount());
+    }
+
+    @Test
+    void testEvaluateLargeSegment() throws IOException {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        JsonObject segment = data.getSegments().values().iterator().next().deepCopy();
+        JsonArray included = segment.getAsJsonArray("included");
+        for (int i = 0; i < 5_000; i++) {
+            included.add("segment-user-" + i);
+        }
+        CompactDataStorageFactory compact = new CompactDataStorageFactory.Builder().build();
+        FBConfig config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url")
+                .dataStorageFactory(compact)
+                .build();
+        FBProvider provider = new FBProvider("env-secret", config);
+        try {
+            assertTrue(provider.getClient().initializeFromExternalJson(data.withSegment(segment).toDataSyncJson()));
+            // the key list is found in the SDK model
+            assertEquals(1, compact.getCompactedListCount());
+            assertEquals("teamA", provider.getStringEvaluation("ff-test-seg", "error", user1).getValue());
+            assertEquals("teamB", provider.getStringEvaluation("ff-test-seg", "error", user2).getValue());
+            assertEquals("teamA", provider.getStringEvaluation("ff-test-seg", "error", user3).getValue());
+            assertEquals("teamB", provider.getStringEvaluation("ff-test-seg", "error", user4).getValue());
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    void testNoWireCopyWithoutFeatures() throws IOException {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        JsonObject segment = data.getSegments().values().iterator().next().deepCopy();
+        JsonArray included = segment.getAsJsonArray("included");
+        for (int i = 0; i < 5_000; i++) {
+            included.add("segment-user-" + i);
+        }
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        // as the public constructor, keeping a hand on the flag data of the client
+        SharedClient client = SharedClient.create("env-secret", config, new CompactDataStorageFactory.Builder().build());
+        FlagDataStorageFactory flagData = client.flagData();
+        FBProvider provider = new FBProvider("env-secret", client, new FBProviderOptions.Builder().build(), null);
+        try {
+            assertTrue(provider.getClient().initializeFromExternalJson(data.withSegment(segment).toDataSyncJson()));
+            assertEquals("teamA", provider.getStringEvaluation("ff-test-seg", "error", user1).getValue());
+            assertEquals("teamB", provider.getStringEvaluation("ff-test-seg", "error", user2).getValue());
+            // the segment is only held by the compact storage
+            assertTrue(flagData.current().isEmpty());
+            // a feature that needs the wire format copies the flags the client already has
+            UserIndependentFlags flags = new UserIndependentFlags();
+            flagData.addUpdateListener(flags);
+            assertEquals(included.size(), flagData.current().getSegments().get(FlagDataSet.segmentId(segment))
+                    .getAsJsonArray("included").size());
+            assertNotNull(flags.get("ff-test-off"));
+            flagData.removeUpdateListener(flags);
+            assertTrue(flagData.current().isEmpty());
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    private static final class Segment {
+        private final List<String> included;
+        private final List<String> excluded;
+        private final List<String> tags;
+
+        private Segment(List<String> included, List<String> excluded, List<String> tags) {
+            this.included = included;
+            this.excluded = excluded;
+            this.tags = tags;
+        }
+    }
+
+    private static final class Flag {
+        private final List<TargetUser> targetUsers;
+
+        private Flag(List<TargetUser> targetUsers) {
+            this.targetUsers = targetUsers;
+        }
+    }
+
+    private static final class TargetUser {
+        private final List<String> keyIds;
+
+        private TargetUser(List<String> keyIds) {
+            this.keyIds = keyIds;
+        }
+    }
+
+    private static final class Unknown {
+        private final List<String> users;
+
+        private Unknown(List<String> users) {
+            this.users = users;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package co.featbit.openfeature;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfigurationChangeCoalescerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final BlockingQueue<List<String>> batches = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void dispose() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testChangesWithinWindowAreCoalesced() throws Exception {
+        ConfigurationChangeCoalescer coalescer = new ConfigurationChangeCoalescer(scheduler, Duration.ofMillis(50), 100, batches::add);
+        coalescer.flagChanged("ff-1");
+        coalescer.flagChanged("ff-2");
+        coalescer.flagChanged("ff-1");
+        coalescer.flagChanged("ff-3");
+        assertEquals(ImmutableList.of("ff-1", "ff-2", "ff-3"), batches.poll(1, TimeUnit.SECONDS));
+        assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+
+        coalescer.flagChanged("ff-4");
+        assertEquals(ImmutableList.of("ff-4"), batches.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testFullBatchIsEmittedBeforeEndOfWindow() throws Exception {
+        ConfigurationChangeCoalescer coalescer = new ConfigurationChangeCoalescer(scheduler, Duration.ofSeconds(10), 2, batches::add);
+        coalescer.flagChanged("ff-1");
+        coalescer.flagChanged("ff-2");
+        coalescer.flagChanged("ff-3");
+        coalescer.flagChanged("ff-4");
+        assertEquals(ImmutableList.of("ff-1", "ff-2"), batches.poll(1, TimeUnit.SECONDS));
+        assertEquals(ImmutableList.of("ff-3", "ff-4"), batches.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBatchesAreEmittedOneAtATime() throws Exception {
+        ScheduledExecutorService pool = Executors.newScheduledThreadPool(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        ConfigurationChangeCoalescer coalescer = new ConfigurationChangeCoalescer(pool, Duration.ofSeconds(10), 1, batch -> {
+            if (running.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            batches.add(batch);
+        });
+        try {
+            for (int i = 0; i < 5; i++) {
+                coalescer.flagChanged("ff-" + i);
+            }
+            for (int i = 0; i < 5; i++) {
+                assertEquals(ImmutableList.of("ff-" + i), batches.poll(1, TimeUnit.SECONDS));
+            }
+            assertEquals(0, overlaps.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testChangesAfterShutdownAreDropped() {
+        ConfigurationChangeCoalescer coalescer = new ConfigurationChangeCoalescer(scheduler, Duration.ofMillis(50), 2, batches::add);
+        scheduler.shutdown();
+        coalescer.flagChanged("ff-1");
+        coalescer.flagChanged("ff-2");
+        assertTrue(batches.isEmpty());
+    }
+
+}
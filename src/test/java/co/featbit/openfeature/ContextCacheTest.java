@@ -0,0 +1,83 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import com.google.common.collect.ImmutableSet;
+import dev.openfeature.sdk.ImmutableContext;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Set;
+
+import static co.featbit.server.EvaluationReason.REASON_RULE_MATCH;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextCacheTest extends BaseTest {
+
+    @Test
+    void testSameContentReturnsCachedUser() {
+        ContextCache cache = new ContextCache(10);
+        FBUser first = cache.toFBUser(user1);
+        FBUser second = cache.toFBUser(new ImmutableContext("test-user-1", new HashMap<String, Value>() {{
+            put("name", new Value("test-user-1"));
+            put("country", new Value("us"));
+        }}));
+        assertSame(first, second);
+        assertNotSame(first, cache.toFBUser(user2));
+        CacheStatistics stats = cache.stats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    void testCacheIsBounded() {
+        ContextCache cache = new ContextCache(2);
+        cache.toFBUser(user1);
+        cache.toFBUser(user2);
+        cache.toFBUser(user3);
+        cache.toFBUser(user4);
+        assertTrue(cache.stats().getSize() <= 2);
+        assertTrue(cache.stats().getEvictionCount() >= 2);
+    }
+
+    @Test
+    void testInvalidContextIsNotCached() {
+        ContextCache cache = new ContextCache(10);
+        assertThrows(IllegalArgumentException.class, () -> cache.toFBUser(null));
+        assertThrows(IllegalArgumentException.class, () -> cache.toFBUser(new ImmutableContext(new HashMap<>())));
+        assertEquals(0, cache.stats().getSize());
+    }
+
+    @Test
+    void testUserIsRebuiltForOtherProperties() {
+        ContextCache cache = new ContextCache(10);
+        Set<String> none = ImmutableSet.of();
+        Set<String> country = ImmutableSet.of("country");
+        FBUser projected = cache.toFBUser(user1, none);
+        assertNull(projected.getProperty("country"));
+        // converted with the previous properties, after the change
+        FBUser user = cache.toFBUser(user1, country);
+        assertEquals("us", user.getProperty("country"));
+        assertSame(user, cache.toFBUser(user1, country));
+        assertEquals(1, cache.stats().getSize());
+        // the rebuild is a miss
+        assertEquals(1, cache.stats().getHitCount());
+        assertEquals(2, cache.stats().getMissCount());
+    }
+
+    @Test
+    void testProviderWithContextCache() throws IOException {
+        FBProvider provider = initClientInOfflineMode(new FBProviderOptions.Builder().contextCacheSize(100).build());
+        ProviderEvaluation<Integer> first = provider.getIntegerEvaluation("ff-test-number", -1, user2);
+        ProviderEvaluation<Integer> second = provider.getIntegerEvaluation("ff-test-number", -1, user2);
+        assertEquals(33, first.getValue());
+        assertEquals(33, second.getValue());
+        assertEquals(REASON_RULE_MATCH, second.getReason());
+        assertEquals(1, provider.getContextCacheStatistics().getHitCount());
+        provider.shutdown();
+    }
+
+}
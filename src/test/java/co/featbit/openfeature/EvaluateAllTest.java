@@ -0,0 +1,89 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.common.collect.ImmutableSet;
+import dev.openfeature.sdk.ErrorCode;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static co.featbit.server.EvaluationReason.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluateAllTest extends BaseTest {
+
+    private static FBProvider provider;
+
+    @BeforeAll
+    static void init() throws IOException {
+        // the variation types are read from the flag data
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        provider = new FBProvider("env-secret", config, FBProviderOptions.DEFAULT);
+        provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testEvaluateAll() {
+        Map<String, ProviderEvaluation<Value>> res = provider.evaluateAll(user1);
+        assertTrue(res.get("ff-test-bool").getValue().asBoolean());
+        assertEquals(REASON_TARGET_MATCH, res.get("ff-test-bool").getReason());
+        assertEquals(1, res.get("ff-test-number").getValue().asInteger());
+        assertEquals("others", res.get("ff-test-string").getValue().asString());
+        assertEquals("teamA", res.get("ff-test-seg").getValue().asString());
+        assertEquals(200, res.get("ff-test-json").getValue().asStructure().asMap().get("code").asInteger());
+        assertNull(res.get("ff-test-json").getErrorCode());
+    }
+
+    @Test
+    void testEvaluateSomeFlags() {
+        Map<String, ProviderEvaluation<Value>> res = provider.evaluateAll(user2, ImmutableSet.of("ff-test-number", "ff-not-existed"));
+        assertEquals(2, res.size());
+        assertEquals(33, res.get("ff-test-number").getValue().asInteger());
+        assertEquals(REASON_RULE_MATCH, res.get("ff-test-number").getReason());
+        assertTrue(res.get("ff-not-existed").getValue().isNull());
+        assertEquals(ErrorCode.FLAG_NOT_FOUND, res.get("ff-not-existed").getErrorCode());
+    }
+
+    @Test
+    void testVariationTyping() {
+        Converter.ValueConverter converter = Converter.ValueConverter.INSTANCE;
+        assertTrue(converter.fromVariation("true", "boolean").asBoolean());
+        assertEquals(42, converter.fromVariation("42", "number").asInteger());
+        assertEquals(0.5D, converter.fromVariation("0.5", "number").asDouble());
+        assertEquals(3, converter.fromVariation("[1, 2, 3]", "json").asList().size());
+        // string flags are never guessed
+        assertEquals("1", converter.fromVariation("1", "string").asString());
+        assertEquals("true", converter.fromVariation("true", "string").asString());
+        assertEquals("[x]", converter.fromVariation("[x]", "string").asString());
+        // an unknown type or a mismatching variation
+        assertEquals("42", converter.fromVariation("42", null).asString());
+        assertEquals("0603111111x", converter.fromVariation("0603111111x", "number").asString());
+        assertEquals("{not json", converter.fromVariation("{not json", "json").asString());
+        assertTrue(converter.fromVariation(null, "string").isNull());
+    }
+
+    @Test
+    void testUnknownVariationTypes() throws IOException {
+        FBProvider configProvider = initClientInOfflineMode();
+        try {
+            Map<String, ProviderEvaluation<Value>> res = configProvider.evaluateAll(user1, ImmutableSet.of("ff-test-bool"));
+            assertEquals("true", res.get("ff-test-bool").getValue().asString());
+        } finally {
+            configProvider.shutdown();
+        }
+    }
+
+}
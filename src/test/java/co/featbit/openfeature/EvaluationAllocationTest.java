@@ -0,0 +1,113 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.EvalDetail;
+import co.featbit.commons.model.FBUser;
+import dev.openfeature.sdk.ProviderEvaluation;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Supplier;
+
+import static co.featbit.server.EvaluationReason.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class EvaluationAllocationTest extends BaseTest {
+
+    private static final int CALLS = 200_000;
+    // a capturing lambda or two, and a few bytes for the measurement itself
+    private static final double SLACK_BYTES_PER_CALL = 64D;
+
+    private static FBProvider provider;
+
+    private final Converter.EvaluationDetailConverter evaluationDetailConverter = Converter.EvaluationDetailConverter.INSTANCE;
+    private final FBUser user = new FBUser.Builder("test-user-4").userName("test-user-4").custom("country", "uk").build();
+
+    @BeforeAll
+    static void init() throws IOException {
+        provider = initClientInOfflineMode();
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testEvaluationsAreNotShared() {
+        ProviderEvaluation<Boolean> first = provider.getBooleanEvaluation("ff-test-bool", false, user2);
+        ProviderEvaluation<Boolean> second = provider.getBooleanEvaluation("ff-test-bool", false, user2);
+        assertTrue(first.getValue());
+        assertEquals(REASON_TARGET_MATCH, first.getReason());
+        assertNull(first.getErrorCode());
+        // an evaluation may be changed by the caller
+        assertNotSame(first, second);
+        first.setValue(false);
+        assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user2).getValue());
+    }
+
+    @Test
+    void testErrorsAreNotShared() {
+        ProviderEvaluation<Boolean> res = provider.getBooleanEvaluation("ff-not-existed", false, user1);
+        assertEquals(REASON_FLAG_NOT_FOUND, res.getReason());
+        assertNotNull(res.getErrorCode());
+    }
+
+    @Test
+    void testConversionOnlyAllocatesTheEvaluation() {
+        com.sun.management.ThreadMXBean allocationBean = allocationBean();
+        EvalDetail<Boolean> detail = provider.getClient().boolVariationDetail("ff-test-bool", user, false);
+        assertEquals(REASON_FALLTHROUGH, detail.getReason());
+
+        double converted = bytesPerCall(allocationBean, () -> evaluationDetailConverter.toProviderEvaluation(detail));
+        // the evaluation returned to the caller, which can't be shared
+        double built = bytesPerCall(allocationBean, () -> ProviderEvaluation.<Boolean>builder()
+                .value(detail.getVariation())
+                .reason(detail.getReason())
+                .build());
+        assertTrue(converted <= built + SLACK_BYTES_PER_CALL, "converted with " + converted + " bytes per call, built with " + built);
+    }
+
+    @Test
+    void testProviderOverheadAllocationBudget() {
+        com.sun.management.ThreadMXBean allocationBean = allocationBean();
+        // what a direct use of the FeatBit client needs: a user, its evaluation and the OpenFeature evaluation
+        double direct = bytesPerCall(allocationBean, () -> evaluationDetailConverter.toProviderEvaluation(
+                provider.getClient().boolVariationDetail("ff-test-bool", Converter.EvaluationContextConverter.INSTANCE.toFBUser(user4), false)));
+        double evaluated = bytesPerCall(allocationBean, () -> provider.getBooleanEvaluation("ff-test-bool", false, user4));
+        assertTrue(evaluated <= direct + SLACK_BYTES_PER_CALL, "evaluated with " + evaluated + " bytes per call, directly with " + direct);
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+
+    private static double bytesPerCall(com.sun.management.ThreadMXBean allocationBean, Supplier<Object> call) {
+        // warm up
+        run(call);
+        long threadId = Thread.currentThread().getId();
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        Object last = run(call);
+        long after = allocationBean.getThreadAllocatedBytes(threadId);
+        assertNotNull(last);
+        return (double) (after - before) / CALLS;
+    }
+
+    private static Object run(Supplier<Object> call) {
+        Object last = null;
+        for (int i = 0; i < CALLS; i++) {
+            last = call.get();
+        }
+        return last;
+    }
+
+}
@@ -0,0 +1,122 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import co.featbit.server.FBConfig;
+import com.google.common.collect.ImmutableSet;
+import dev.openfeature.sdk.ImmutableStructure;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+
+import static co.featbit.server.EvaluationReason.REASON_FALLTHROUGH;
+import static co.featbit.server.EvaluationReason.REASON_RULE_MATCH;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationCacheTest extends BaseTest {
+
+    private final FBUser user = new FBUser.Builder("test-user-1").userName("test-user-1").build();
+
+    @Test
+    void testInvalidateOnlyDropsTheChangedFlag() {
+        EvaluationCache cache = new EvaluationCache(100, Duration.ZERO, ImmutableSet.of());
+        ContextKey contextKey = ContextKey.of(user1);
+        ProviderEvaluation<String> evaluation = ProviderEvaluation.<String>builder().value("teamA").reason(REASON_RULE_MATCH).build();
+        cache.put("flag-a", contextKey, EvaluationCache.Type.STRING, evaluation, user, cache.generation());
+        cache.put("flag-b", contextKey, EvaluationCache.Type.STRING, evaluation, user, cache.generation());
+        assertSame(evaluation, cache.get("flag-a", contextKey, EvaluationCache.Type.STRING).evaluation());
+        assertNull(cache.get("flag-a", contextKey, EvaluationCache.Type.BOOLEAN));
+
+        cache.invalidate("flag-a");
+        assertNull(cache.get("flag-a", contextKey, EvaluationCache.Type.STRING));
+        assertNotNull(cache.get("flag-b", contextKey, EvaluationCache.Type.STRING));
+
+        cache.invalidateAll();
+        assertNull(cache.get("flag-b", contextKey, EvaluationCache.Type.STRING));
+    }
+
+    @Test
+    void testEvaluationStartedBeforeAChangeIsNotCached() {
+        EvaluationCache cache = new EvaluationCache(100, Duration.ZERO, ImmutableSet.of());
+        ContextKey contextKey = ContextKey.of(user1);
+        long generation = cache.generation();
+        cache.invalidate("flag-a");
+        ProviderEvaluation<String> evaluation = ProviderEvaluation.<String>builder().value("teamA").reason(REASON_RULE_MATCH).build();
+        cache.put("flag-a", contextKey, EvaluationCache.Type.STRING, evaluation, user, generation);
+        assertNull(cache.get("flag-a", contextKey, EvaluationCache.Type.STRING));
+    }
+
+    @Test
+    void testProviderWithEvaluationCache() throws IOException {
+        FBProvider provider = initProvider(new FBProviderOptions.Builder()
+                .evaluationCacheSize(100)
+                .evaluationCacheExcludedFlags("ff-test-string")
+                .insightDeduplicationWindow(Duration.ofMinutes(10))
+                .build());
+        Value structure = new Value(new ImmutableStructure(new HashMap<>()));
+        ProviderEvaluation<Value> first = provider.getObjectEvaluation("ff-test-json", structure, user2);
+        ProviderEvaluation<Value> second = provider.getObjectEvaluation("ff-test-json", structure, user2);
+        assertEquals(404, second.getValue().asStructure().asMap().get("code").asInteger());
+        assertEquals(REASON_FALLTHROUGH, second.getReason());
+        assertNotSame(first, second);
+        assertSame(first.getValue(), second.getValue());
+        // changing a returned evaluation doesn't change the cached one
+        first.setReason(REASON_RULE_MATCH);
+        assertEquals(REASON_FALLTHROUGH, provider.getObjectEvaluation("ff-test-json", structure, user2).getReason());
+
+        provider.getStringEvaluation("ff-test-string", "error", user1);
+        provider.getStringEvaluation("ff-test-string", "error", user1);
+        // errors are never cached
+        provider.getStringEvaluation("ff-not-existed", "error", user1);
+        provider.getStringEvaluation("ff-not-existed", "error", user1);
+
+        CacheStatistics stats = provider.getEvaluationCacheStatistics();
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getSize());
+        // the hits were served because their insights were deduplicated
+        InsightStatistics.FlagInsights insights = provider.getInsightStatistics().getFlag("ff-test-json");
+        assertEquals(1, insights.getSentCount());
+        assertEquals(2, insights.getDeduplicatedCount());
+        provider.shutdown();
+    }
+
+    @Test
+    void testHitsAreEvaluatedWhenTheirInsightIsSent() throws IOException {
+        FBProvider provider = initProvider(new FBProviderOptions.Builder()
+                .evaluationCacheSize(100)
+                // the evaluations of the other flags are never deduplicated nor sampled out
+                .insightSamplingRate("ff-test-string", 0.5)
+                .build());
+        assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+        assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+        CacheStatistics stats = provider.getEvaluationCacheStatistics();
+        assertEquals(0, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, provider.getInsightStatistics().getFlag("ff-test-bool").getSentCount());
+        provider.shutdown();
+    }
+
+    @Test
+    void testCacheRequiresInsightFiltering() throws IOException {
+        FBProvider provider = initClientInOfflineMode(new FBProviderOptions.Builder().evaluationCacheSize(100).build());
+        provider.getBooleanEvaluation("ff-test-bool", false, user1);
+        provider.getBooleanEvaluation("ff-test-bool", false, user1);
+        assertEquals(0, provider.getEvaluationCacheStatistics().getSize());
+        provider.shutdown();
+    }
+
+    // built from a FBConfig.Builder, as required by the insight filtering
+    private static FBProvider initProvider(FBProviderOptions options) throws IOException {
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        FBProvider provider = new FBProvider("env-secret", config, options);
+        provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+        return provider;
+    }
+
+}
@@ -0,0 +1,120 @@
+package co.featbit.openfeature;
+
+import dev.openfeature.sdk.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import static co.featbit.server.EvaluationReason.REASON_FALLTHROUGH;
+import static co.featbit.server.EvaluationReason.REASON_TARGET_MATCH;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationMetricsTest extends BaseTest {
+
+    private static final String DOMAIN = "evaluation-metrics-test";
+
+    private static FBProvider provider;
+
+    @BeforeAll
+    static void init() throws IOException {
+        provider = initClientInOfflineMode(new FBProviderOptions.Builder().evaluationMetrics(true).build());
+        OpenFeatureAPI.getInstance().setProviderAndWait(DOMAIN, provider);
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testEvaluationsAreRecorded() {
+        Client client = OpenFeatureAPI.getInstance().getClient(DOMAIN);
+        client.getBooleanValue("ff-test-bool", false, user1);
+        client.getBooleanValue("ff-test-bool", false, user2);
+        client.getBooleanValue("ff-test-bool", false, user4);
+        client.getStringValue("ff-not-existed", "error", user1);
+
+        EvaluationMetrics.FlagMetrics bool = provider.getEvaluationMetrics().getFlags().get("ff-test-bool");
+        assertEquals(3, bool.getEvaluationCount());
+        assertEquals(0, bool.getErrorCount());
+        assertEquals(2L, bool.getReasonCounts().get(REASON_TARGET_MATCH));
+        assertEquals(1L, bool.getReasonCounts().get(REASON_FALLTHROUGH));
+        assertTrue(bool.getLatencyPercentileNanos(99) > 0);
+
+        EvaluationMetrics.FlagMetrics notFound = provider.getEvaluationMetrics().getFlags().get("ff-not-existed");
+        assertEquals(1, notFound.getEvaluationCount());
+        assertEquals(1, notFound.getErrorCount());
+        assertEquals(1L, notFound.getErrorCodeCounts().get(ErrorCode.FLAG_NOT_FOUND));
+    }
+
+    @Test
+    void testFlagsBeyondTheLimitAreRecordedTogether() {
+        EvaluationMetricsHook hook = new EvaluationMetricsHook(2);
+        OpenFeatureAPI.getInstance().setProviderAndWait(DOMAIN + "-limit", provider);
+        Client client = OpenFeatureAPI.getInstance().getClient(DOMAIN + "-limit");
+        client.addHooks(hook);
+        client.getBooleanValue("ff-test-bool", false, user1);
+        client.getStringValue("ff-test-string", "error", user1);
+        client.getStringValue("ff-not-existed-1", "error", user1);
+        client.getStringValue("ff-not-existed-2", "error", user1);
+
+        EvaluationMetrics metrics = hook.snapshot();
+        assertEquals(2, metrics.getFlags().size());
+        assertEquals(2, metrics.getOtherFlags().getEvaluationCount());
+        assertEquals(2L, metrics.getOtherFlags().getErrorCodeCounts().get(ErrorCode.FLAG_NOT_FOUND));
+
+        hook.flagRemoved("ff-test-string");
+        client.getStringValue("ff-not-existed-1", "error", user1);
+        assertTrue(hook.snapshot().getFlags().containsKey("ff-not-existed-1"));
+        assertFalse(hook.snapshot().getFlags().containsKey("ff-test-string"));
+    }
+
+    @Test
+    void testNestedEvaluationsKeepTheirLatency() {
+        EvaluationMetricsHook hook = new EvaluationMetricsHook();
+        OpenFeatureAPI.getInstance().setProviderAndWait(DOMAIN + "-nested", provider);
+        Client client = OpenFeatureAPI.getInstance().getClient(DOMAIN + "-nested");
+        // evaluates another flag between the before and after stages of the metrics hook
+        Hook<Object> nesting = new Hook<Object>() {
+            @Override
+            public Optional<EvaluationContext> before(HookContext<Object> ctx, Map<String, Object> hints) {
+                if ("ff-test-bool".equals(ctx.getFlagKey())) {
+                    client.getStringValue("ff-test-string", "error", user1);
+                }
+                return Optional.empty();
+            }
+        };
+        client.addHooks(hook, nesting);
+        client.getBooleanValue("ff-test-bool", false, user1);
+
+        EvaluationMetrics metrics = hook.snapshot();
+        for (String flagKey : new String[]{"ff-test-bool", "ff-test-string"}) {
+            EvaluationMetrics.FlagMetrics flag = metrics.getFlags().get(flagKey);
+            assertEquals(1, flag.getEvaluationCount());
+            assertEquals(1, Arrays.stream(flag.getLatencyBucketCounts()).sum(), flagKey);
+        }
+        // the outer evaluation includes the nested one
+        assertTrue(metrics.getFlags().get("ff-test-bool").getTotalLatencyNanos() >= metrics.getFlags().get("ff-test-string").getTotalLatencyNanos());
+    }
+
+    @Test
+    void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1_000);
+        histogram.record(1_500);
+        histogram.record(Long.MAX_VALUE);
+        long[] counts = histogram.bucketCounts();
+        assertEquals(1, counts[0]);
+        // 1000 is in [512, 1024), 1500 in [1024, 2048)
+        assertEquals(1, counts[10]);
+        assertEquals(1, counts[11]);
+        assertEquals(1, counts[LatencyHistogram.BUCKET_COUNT - 1]);
+    }
+
+}
@@ -0,0 +1,83 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FBProviderRegistryTest extends BaseTest {
+
+    private FBProviderRegistry registry;
+
+    @BeforeEach
+    void init() {
+        registry = new FBProviderRegistry();
+    }
+
+    @AfterEach
+    void dispose() {
+        registry.close();
+    }
+
+    private static FBConfig.Builder offlineConfig() {
+        return new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+    }
+
+    @Test
+    void testSdkKeyHasOneProvider() throws Exception {
+        FBProvider provider1 = registry.getProvider("env-secret-1", offlineConfig());
+        FBProvider provider2 = registry.getProvider("env-secret-1", offlineConfig());
+        FBProvider provider3 = registry.getProvider("env-secret-2", offlineConfig());
+        assertSame(provider1, provider2);
+        assertNotSame(provider1.getClient(), provider3.getClient());
+        assertEquals(2, registry.getClientCount());
+
+        provider1.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+        assertTrue(provider2.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+
+        provider1.shutdown();
+        assertEquals(1, registry.getClientCount());
+        provider3.shutdown();
+        assertEquals(0, registry.getClientCount());
+    }
+
+    @Test
+    void testOtherOptionsGetTheExistingProvider() {
+        FBProviderOptions options = new FBProviderOptions.Builder().contextCacheSize(10).build();
+        FBProvider provider1 = registry.getProvider("env-secret", offlineConfig(), options);
+        FBProvider provider2 = registry.getProvider("env-secret", offlineConfig(), FBProviderOptions.DEFAULT);
+        assertSame(provider1, provider2);
+        assertEquals(1, registry.getClientCount());
+        provider1.shutdown();
+    }
+
+    @Test
+    void testShutdownIsIdempotent() {
+        FBProvider provider = registry.getProvider("env-secret", offlineConfig());
+        provider.shutdown();
+        provider.shutdown();
+        assertEquals(0, registry.getClientCount());
+    }
+
+    @Test
+    void testNewClientAfterLastRelease() {
+        FBProvider provider1 = registry.getProvider("env-secret", offlineConfig());
+        provider1.shutdown();
+        FBProvider provider2 = registry.getProvider("env-secret", offlineConfig());
+        assertNotSame(provider1.getClient(), provider2.getClient());
+        assertEquals(1, registry.getClientCount());
+        provider2.shutdown();
+    }
+
+    @Test
+    void testClosedRegistry() {
+        registry.close();
+        assertThrows(IllegalStateException.class, () -> registry.getProvider("env-secret", offlineConfig()));
+    }
+
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 import static co.featbit.server.EvaluationReason.*;
@@ -83,6 +84,23 @@ class FBProviderTest extends BaseTest {
         assertEquals(REASON_FALLTHROUGH, details.getReason());
     }
 
+    @Test
+    void testJsonVariationIsConvertedOnce() {
+        Value structure = new Value(new ImmutableStructure(new HashMap<>()));
+        Value first = provider.getObjectEvaluation("ff-test-json", structure, user2).getValue();
+        Value second = provider.getObjectEvaluation("ff-test-json", structure, user4).getValue();
+        assertEquals(404, second.asStructure().asMap().get("code").asInteger());
+        assertSame(first, second);
+    }
+
+    @Test
+    void testJsonVariationTypeMismatch() {
+        FlagEvaluationDetails<Value> details = OpenFeatureAPI.getInstance().getClient()
+                .getObjectDetails("ff-test-json", new Value(new ArrayList<>()), user1);
+        assertEquals(ErrorCode.TYPE_MISMATCH, details.getErrorCode());
+        assertEquals("The variation of flag ff-test-json is not a json list.", details.getErrorMessage());
+    }
+
     @Test
     void testSegment() {
         Client client = OpenFeatureAPI.getInstance().getClient();
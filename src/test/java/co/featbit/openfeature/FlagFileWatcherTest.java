@@ -0,0 +1,176 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.openfeature.sdk.NoOpProvider;
+import dev.openfeature.sdk.OpenFeatureAPI;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlagFileWatcherTest extends BaseTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testMergePatch() throws IOException {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        JsonObject flag = enabled(data, "2030-01-01T00:00:00Z");
+        FlagDataSet res = FlagFileWatcher.merge(data, patch(flag));
+        assertEquals(flag, res.getFlags().get("ff-test-off"));
+        assertEquals(data.getFlags().get("ff-test-bool"), res.getFlags().get("ff-test-bool"));
+        assertSame(data.getSegments(), res.getSegments());
+        // the same patch or an older one change nothing
+        assertSame(res, FlagFileWatcher.merge(res, patch(flag)));
+        assertSame(res, FlagFileWatcher.merge(res, patch(enabled(data, "2020-01-01T00:00:00Z"))));
+    }
+
+    @Test
+    void testMergeFull() throws IOException {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        JsonObject full = JsonParser.parseString(readResource("fbclient_test_data.json")).getAsJsonObject();
+        assertSame(data, FlagFileWatcher.merge(data, full));
+        assertEquals(data.getFlags(), FlagFileWatcher.merge(FlagDataSet.EMPTY, full).getFlags());
+        assertThrows(IllegalArgumentException.class, () -> FlagFileWatcher.merge(data, new JsonObject()));
+    }
+
+    @Test
+    void testWatchDirectory() throws Exception {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        write("00-full.json", readResource("fbclient_test_data.json"));
+        FBConfig config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url")
+                .build();
+        FBProviderOptions options = new FBProviderOptions.Builder()
+                .offlineDataDirectory(directory)
+                .build();
+        FBProvider provider = new FBProvider("env-secret", config, options);
+        Set<String> changed = ConcurrentHashMap.newKeySet();
+        provider.getClient().getFlagTracker().addFlagChangeListener(event -> changed.add(event.getKey()));
+        try {
+            provider.initialize(user1);
+            assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+            assertFalse(provider.getBooleanEvaluation("ff-test-off", true, user1).getValue());
+
+            changed.clear();
+            write("01-patch.json", patch(enabled(data, "2030-01-01T00:00:00Z")).toString());
+            // the watch service may poll the directory
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!provider.getBooleanEvaluation("ff-test-off", false, user1).getValue() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(provider.getBooleanEvaluation("ff-test-off", false, user1).getValue());
+            assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+            Thread.sleep(200);
+            assertFalse(changed.contains("ff-test-bool"));
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    void testPatchOnlyUpdatesTheChangedFlags() throws Exception {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        write("00-full.json", readResource("fbclient_test_data.json"));
+        FBProvider provider = new FBProvider("env-secret", offlineConfig(), new FBProviderOptions.Builder()
+                .offlineDataDirectory(directory)
+                .build());
+        Set<String> changed = ConcurrentHashMap.newKeySet();
+        OpenFeatureAPI.getInstance().setProviderAndWait("flag-files", provider);
+        OpenFeatureAPI.getInstance().getClient("flag-files")
+                .onProviderConfigurationChanged(details -> {
+                    if (details.getFlagsChanged() != null) {
+                        changed.addAll(details.getFlagsChanged());
+                    }
+                });
+        try {
+            assertFalse(provider.getBooleanEvaluation("ff-test-off", true, user1).getValue());
+            write("01-patch.json", patch(enabled(data, "2030-01-01T00:00:00Z")).toString());
+            await(() -> changed.contains("ff-test-off"));
+            assertTrue(provider.getBooleanEvaluation("ff-test-off", false, user1).getValue());
+            assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+            assertFalse(changed.contains("ff-test-bool"));
+
+            // the remaining files are applied again
+            changed.clear();
+            Files.delete(directory.resolve("01-patch.json"));
+            await(() -> changed.contains("ff-test-off"));
+            assertFalse(provider.getBooleanEvaluation("ff-test-off", true, user1).getValue());
+        } finally {
+            // replacing the provider shuts it down
+            OpenFeatureAPI.getInstance().setProviderAndWait("flag-files", new NoOpProvider());
+        }
+    }
+
+    @Test
+    void testReadMappedFile() throws IOException {
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 2 << 20) {
+            description.append("a large flag file ");
+        }
+        JsonObject full = JsonParser.parseString(readResource("fbclient_test_data.json")).getAsJsonObject();
+        full.getAsJsonObject("data").getAsJsonArray("featureFlags").get(0).getAsJsonObject()
+                .addProperty("description", description.toString());
+        Path file = write("large.json", full.toString());
+        assertEquals(full, FlagFileWatcher.read(file));
+    }
+
+    // the watch service may poll the directory
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    // built from a FBConfig.Builder, the watcher then upserts the changed flags through the storage
+    private static FBConfig.Builder offlineConfig() {
+        return new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+    }
+
+    // ff-test-off, enabled and served true
+    private static JsonObject enabled(FlagDataSet data, String updatedAt) {
+        JsonObject flag = data.getFlags().get("ff-test-off").deepCopy();
+        flag.addProperty("isEnabled", true);
+        flag.addProperty("updatedAt", updatedAt);
+        return flag;
+    }
+
+    private static JsonObject patch(JsonObject flag) {
+        JsonArray flags = new JsonArray();
+        flags.add(flag);
+        JsonObject data = new JsonObject();
+        data.addProperty("eventType", "patch");
+        data.add("featureFlags", flags);
+        data.add("segments", new JsonArray());
+        JsonObject doc = new JsonObject();
+        doc.addProperty("messageType", "data-sync");
+        doc.add("data", data);
+        return doc;
+    }
+
+    private Path write(String fileName, String json) throws IOException {
+        Path tmp = directory.resolve(fileName + ".tmp");
+        Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+        return Files.move(tmp, directory.resolve(fileName));
+    }
+}
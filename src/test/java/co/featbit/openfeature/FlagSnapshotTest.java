@@ -0,0 +1,171 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBClientImp;
+import co.featbit.server.FBConfig;
+import co.featbit.server.Factory;
+import co.featbit.server.exterior.FBClient;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonObject;
+import dev.openfeature.sdk.ProviderState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static co.featbit.server.EvaluationReason.REASON_TARGET_MATCH;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlagSnapshotTest extends BaseTest {
+
+    @TempDir
+    Path dir;
+
+    private static FBConfig.Builder offlineConfig() {
+        return new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+    }
+
+    @Test
+    void testDataSyncJsonRoundTrip() throws Exception {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        assertTrue(data.getFlags().containsKey("ff-test-bool"));
+        assertTrue(data.getSegments().size() > 0);
+        FlagDataSet copy = FlagDataSet.parse(data.toDataSyncJson());
+        assertEquals(data.getFlags(), copy.getFlags());
+        assertEquals(data.getSegments(), copy.getSegments());
+    }
+
+    @Test
+    void testReadMissingSnapshot() throws Exception {
+        assertNull(FlagSnapshot.read(dir.resolve("missing.json")));
+    }
+
+    @Test
+    void testWriteSnapshot() throws Exception {
+        Path file = dir.resolve("snapshot.json");
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        FlagSnapshot snapshot = new FlagSnapshot(file, executor);
+        snapshot.accept(FlagDataSet.EMPTY);
+        snapshot.accept(data);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(data.getFlags(), FlagDataSet.parse(FlagSnapshot.read(file)).getFlags());
+    }
+
+    @Test
+    void testServeSnapshotBeforeFirstSync() throws Exception {
+        Path file = dir.resolve("snapshot.json");
+        Files.write(file, readResource("fbclient_test_data.json").getBytes(StandardCharsets.UTF_8));
+        FBProviderOptions options = new FBProviderOptions.Builder().snapshotFile(file).build();
+        FBProvider provider = new FBProvider("env-secret", offlineConfig(), options);
+        try {
+            provider.initialize(null);
+            assertEquals(ProviderState.READY, provider.getState());
+            assertTrue(provider.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+            assertEquals(REASON_TARGET_MATCH, provider.getBooleanEvaluation("ff-test-bool", false, user2).getReason());
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    void testSnapshotIsWrittenOnSync() throws Exception {
+        Path file = dir.resolve("snapshot.json");
+        FBProviderOptions options = new FBProviderOptions.Builder().snapshotFile(file).build();
+        FBProvider provider = new FBProvider("env-secret", offlineConfig(), options);
+        provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+        provider.shutdown();
+        FlagDataSet data = FlagDataSet.parse(FlagSnapshot.read(file));
+        assertTrue(data.getFlags().containsKey("ff-test-bool"));
+        assertFalse(data.getSegments().isEmpty());
+    }
+
+    @Test
+    void testBootstrapFromSnapshotWrittenByClient() throws Exception {
+        Path file = dir.resolve("snapshot.json");
+        FBProviderOptions options = new FBProviderOptions.Builder().snapshotFile(file).build();
+        // the snapshot is serialized from the models stored by the client
+        FBProvider writer = new FBProvider("env-secret", offlineConfig(), options);
+        writer.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+        writer.shutdown();
+
+        FBProvider reader = new FBProvider("env-secret", offlineConfig(), options);
+        try {
+            reader.initialize(null);
+            assertEquals(ProviderState.READY, reader.getState());
+            assertTrue(reader.getBooleanEvaluation("ff-test-bool", false, user1).getValue());
+            assertEquals(REASON_TARGET_MATCH, reader.getBooleanEvaluation("ff-test-bool", false, user2).getReason());
+            assertEquals("others", reader.getStringEvaluation("ff-test-string", "error", user1).getValue());
+        } finally {
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    void testWithFlagReplacesInPlace() throws Exception {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        JsonObject flag = data.getFlags().get("ff-test-bool").deepCopy();
+        flag.addProperty("isEnabled", false);
+        FlagDataSet res = data.withFlag(flag);
+        assertEquals(flag, res.getFlags().get("ff-test-bool"));
+        assertEquals(new ArrayList<>(data.getFlags().keySet()), new ArrayList<>(res.getFlags().keySet()));
+        assertSame(data.getSegments(), res.getSegments());
+    }
+
+    @Test
+    void testWithReplacesABatch() throws Exception {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        JsonObject flag = data.getFlags().get("ff-test-bool").deepCopy();
+        flag.addProperty("isEnabled", false);
+        JsonObject added = flag.deepCopy();
+        added.addProperty("key", "ff-added");
+        Map<String, JsonObject> flags = new LinkedHashMap<>();
+        flags.put("ff-added", added);
+        flags.put("ff-test-bool", flag);
+        FlagDataSet res = data.with(flags, ImmutableMap.of());
+        assertEquals(flag, res.getFlags().get("ff-test-bool"));
+        List<String> keys = new ArrayList<>(data.getFlags().keySet());
+        keys.add("ff-added");
+        assertEquals(keys, new ArrayList<>(res.getFlags().keySet()));
+        assertSame(data.getSegments(), res.getSegments());
+    }
+
+    @Test
+    void testFlagDataCopyKeepsTheWireFormat() throws Exception {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        FlagDataStorageFactory flagData = new FlagDataStorageFactory(Factory.inMemoryDataStorageFactory());
+        FBClient client = new FBClientImp("env-secret", offlineConfig().dataStorageFactory(flagData).build());
+        try {
+            flagData.addListener(copy -> {
+            });
+            assertTrue(client.initializeFromExternalJson(data.toDataSyncJson()));
+            // the copy is serialized from the SDK models, the fields read by the provider must survive it
+            FlagDataSet copy = flagData.current();
+            assertEquals(data.getFlags().keySet(), copy.getFlags().keySet());
+            assertEquals(data.getSegments().keySet(), copy.getSegments().keySet());
+            for (String flagKey : data.getFlags().keySet()) {
+                assertEquals(data.variationType(flagKey), flagData.variationType(flagKey), flagKey);
+                assertEquals(data.variationType(flagKey), copy.variationType(flagKey), flagKey);
+                assertEquals(UserIndependentFlags.isUserIndependent(data.getFlags().get(flagKey)),
+                        UserIndependentFlags.isUserIndependent(copy.getFlags().get(flagKey)), flagKey);
+            }
+            assertEquals(ReferencedProperties.of(data), ReferencedProperties.of(copy));
+            assertFalse(ReferencedProperties.of(copy).isEmpty());
+        } finally {
+            client.close();
+        }
+    }
+
+}
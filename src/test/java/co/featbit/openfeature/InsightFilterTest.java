@@ -0,0 +1,182 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import co.featbit.server.FBClientImp;
+import co.featbit.server.FBConfig;
+import co.featbit.server.Factory;
+import co.featbit.server.exterior.FBClient;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonObject;
+import dev.openfeature.sdk.MutableStructure;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InsightFilterTest extends BaseTest {
+
+    private static FBProvider provider;
+
+    private static FBConfig.Builder offlineConfig() {
+        return new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+    }
+
+    @BeforeAll
+    static void init() throws IOException {
+        FBConfig.Builder config = offlineConfig();
+        FBProviderOptions options = new FBProviderOptions.Builder()
+                .insightDeduplicationWindow(Duration.ofHours(1))
+                .insightSamplingRate("ff-test-string", 0D)
+                .build();
+        provider = new FBProvider("env-secret", config, options);
+        provider.getClient().initializeFromExternalJson(readResource("fbclient_test_data.json"));
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testDeduplicator() {
+        long window = TimeUnit.SECONDS.toNanos(10);
+        long now = System.nanoTime();
+        InsightDeduplicator deduplicator = new InsightDeduplicator(window, 100);
+        long key = InsightDeduplicator.hash("test-user-1", "ff-test-bool", Boolean.TRUE);
+        assertTrue(deduplicator.add(key, now));
+        assertFalse(deduplicator.add(key, now + 1));
+        // still seen in the previous window
+        assertFalse(deduplicator.add(key, now + window + 1));
+        assertTrue(deduplicator.add(InsightDeduplicator.hash("test-user-1", "ff-test-bool", Boolean.FALSE), now + 2));
+        assertTrue(deduplicator.add(InsightDeduplicator.hash("test-user-2", "ff-test-bool", Boolean.TRUE), now + 2));
+        assertTrue(deduplicator.add(key, now + 3 * window));
+    }
+
+    @Test
+    void testHashDoesNotCollideWithStringHashCodes() {
+        // "Aa" and "BB" have the same String hash code
+        assertNotEquals(InsightDeduplicator.hash("Aa", "ff-test-bool", true), InsightDeduplicator.hash("BB", "ff-test-bool", true));
+        assertNotEquals(InsightDeduplicator.hash("ab", "c", true), InsightDeduplicator.hash("a", "bc", true));
+        assertNotEquals(InsightDeduplicator.hash("test-user-1", "ff-test-bool"), InsightDeduplicator.hash("test-user-1", "ff-test-bool", ""));
+    }
+
+    @Test
+    void testSeenUsers() {
+        InsightFilter filter = new InsightFilter(Duration.ofHours(1), 100, 1D, ImmutableMap.of());
+        assertFalse(filter.isSeen("ff-test-bool", "test-user-1"));
+        filter.record("ff-test-bool", "test-user-1", true, true);
+        assertTrue(filter.isSeen("ff-test-bool", "test-user-1"));
+        assertFalse(filter.isSeen("ff-test-bool", "test-user-2"));
+        // the recorded variation is deduplicated, another one is sent
+        assertFalse(filter.shouldSend("ff-test-bool", "test-user-1", true));
+        assertTrue(filter.shouldSend("ff-test-bool", "test-user-1", false));
+        InsightStatistics.FlagInsights insights = filter.stats().getFlag("ff-test-bool");
+        assertEquals(3, insights.getEvaluationCount());
+        assertEquals(2, insights.getSentCount());
+        assertEquals(1, insights.getDeduplicatedCount());
+    }
+
+    @Test
+    void testShadowClientFollowsUpdates() throws IOException {
+        FlagDataSet data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        FlagDataStorageFactory flagData = new FlagDataStorageFactory(Factory.inMemoryDataStorageFactory());
+        FBClient live = new FBClientImp("env-secret", offlineConfig().dataStorageFactory(flagData).build());
+        ShadowClient shadow = new ShadowClient(flagData,
+                storage -> new FBClientImp("env-secret", offlineConfig().dataStorageFactory(storage).build()),
+                client -> {
+                    try {
+                        client.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        FBUser user = new FBUser.Builder("test-user-1").userName("test-user-1").build();
+        try {
+            assertNull(shadow.get());
+            live.initializeFromExternalJson(data.toDataSyncJson());
+            FBClient client = shadow.get();
+            assertNotNull(client);
+            assertFalse(client.boolVariation("ff-test-off", user, true));
+
+            JsonObject flag = data.getFlags().get("ff-test-off").deepCopy();
+            flag.addProperty("isEnabled", true);
+            flag.addProperty("updatedAt", "2030-01-01T00:00:00Z");
+            live.initializeFromExternalJson(data.withFlag(flag).toDataSyncJson());
+            // updated in place, on the thread of the update
+            assertSame(client, shadow.get());
+            assertTrue(client.boolVariation("ff-test-off", user, false));
+        } finally {
+            shadow.close();
+            live.close();
+        }
+        assertNull(shadow.get());
+    }
+
+    @Test
+    void testFullDeduplicatorLetsInsightsThrough() {
+        long now = System.nanoTime();
+        InsightDeduplicator deduplicator = new InsightDeduplicator(TimeUnit.HOURS.toNanos(1), 8);
+        for (int i = 0; i < 1_000; i++) {
+            deduplicator.add(InsightDeduplicator.hash("user-" + i, "ff-test-bool", 0), now);
+        }
+        assertTrue(deduplicator.add(InsightDeduplicator.hash("user-new", "ff-test-bool", 0), now));
+    }
+
+    @Test
+    void testSampling() {
+        InsightFilter filter = new InsightFilter(Duration.ZERO, 100, 1D, ImmutableMap.of("ff-test-string", 0D));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(filter.shouldSend("ff-test-bool", "test-user-1", true));
+            assertFalse(filter.shouldSend("ff-test-string", "test-user-1", "others"));
+        }
+        InsightStatistics stats = filter.stats();
+        assertEquals(10, stats.getFlag("ff-test-bool").getSentCount());
+        assertEquals(10, stats.getFlag("ff-test-string").getSampledOutCount());
+        assertEquals(0, stats.getFlag("ff-test-string").getSentCount());
+    }
+
+    @Test
+    void testDeduplicatedEvaluations() {
+        // the shadow client is patched with the live flags on the update thread, it is ready once they are loaded
+        for (int i = 0; i < 3; i++) {
+            ProviderEvaluation<Boolean> res = provider.getBooleanEvaluation("ff-test-bool", false, user1);
+            assertTrue(res.getValue());
+        }
+        InsightStatistics.FlagInsights insights = provider.getInsightStatistics().getFlag("ff-test-bool");
+        assertEquals(1, insights.getSentCount());
+        assertEquals(2, insights.getDeduplicatedCount());
+        assertEquals(insights.getEvaluationCount(),
+                insights.getSentCount() + insights.getDeduplicatedCount() + insights.getSampledOutCount());
+
+        // a json variation is deduplicated without being converted to a string
+        Value defaultValue = new Value(new MutableStructure());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(provider.getObjectEvaluation("ff-test-json", defaultValue, user1).getValue().isStructure());
+        }
+        assertEquals(2, provider.getInsightStatistics().getFlag("ff-test-json").getDeduplicatedCount());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("others", provider.getStringEvaluation("ff-test-string", "", user1).getValue());
+        }
+        assertEquals(0, provider.getInsightStatistics().getFlag("ff-test-string").getSentCount());
+    }
+
+    @Test
+    void testInvalidOptions() {
+        assertThrows(IllegalArgumentException.class, () -> new FBProviderOptions.Builder().insightSamplingRate(1.5));
+        assertThrows(IllegalArgumentException.class, () -> new FBProviderOptions.Builder().insightSamplingRate(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> new FBProviderOptions.Builder().insightDeduplicationCapacity(0));
+        assertThrows(IllegalArgumentException.class, () -> new FBProviderOptions.Builder().insightDeduplicationWindow(Duration.ofSeconds(-1)));
+    }
+}
@@ -0,0 +1,71 @@
+package co.featbit.openfeature;
+
+import com.google.gson.JsonParseException;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonValueDecoderTest {
+
+    private final Converter.JsonValueDecoder decoder = Converter.JsonValueDecoder.INSTANCE;
+
+    @Test
+    void testDecodeStructure() {
+        Value value = decoder.decode("{\"code\": 200, \"reason\": \"you win 100 euros\", \"ratio\": 0.25, " +
+                "\"enabled\": true, \"missing\": null, \"tags\": [\"a\", \"b\"], \"nested\": {\"level\": 2, \"items\": []}}");
+        Map<String, Value> attributes = value.asStructure().asMap();
+        assertEquals(200, attributes.get("code").asInteger());
+        assertEquals("you win 100 euros", attributes.get("reason").asString());
+        assertEquals(0.25D, attributes.get("ratio").asDouble());
+        assertTrue(attributes.get("enabled").asBoolean());
+        assertTrue(attributes.get("missing").isNull());
+        assertEquals(2, attributes.get("tags").asList().size());
+        Map<String, Value> nested = attributes.get("nested").asStructure().asMap();
+        assertEquals(2, nested.get("level").asInteger());
+        assertTrue(nested.get("items").asList().isEmpty());
+    }
+
+    @Test
+    void testDecodeList() {
+        List<Value> values = decoder.decode("[1, 2.5, \"three\", false, {\"four\": 4}]").asList();
+        assertEquals(5, values.size());
+        assertEquals(1, values.get(0).asInteger());
+        assertEquals(2.5D, values.get(1).asDouble());
+        assertEquals("three", values.get(2).asString());
+        assertFalse(values.get(3).asBoolean());
+        assertEquals(4, values.get(4).asStructure().asMap().get("four").asInteger());
+        assertThrows(UnsupportedOperationException.class, () -> values.add(new Value()));
+    }
+
+    @Test
+    void testNumbersAreNotNarrowed() {
+        assertTrue(decoder.toNumberValue("200").asObject() instanceof Integer);
+        assertTrue(decoder.toNumberValue("2.0").asObject() instanceof Double);
+        assertEquals(3_000_000_000D, decoder.toNumberValue("3000000000").asDouble());
+        // beyond 2^53, a double would round it
+        Object big = decoder.toNumberValue("9007199254740993").asObject();
+        assertEquals(9_007_199_254_740_993L, ((Number) big).longValue());
+        assertEquals(1.5E300D, decoder.toNumberValue("1.5E300").asDouble());
+        // a value beyond the long range degrades to a double instead of failing
+        assertEquals(1E20D, decoder.toNumberValue("100000000000000000000").asDouble());
+    }
+
+    @Test
+    void testCommonValuesAreInterned() {
+        List<Value> values = decoder.decode("[true, true, 7, 7]").asList();
+        assertSame(values.get(0), values.get(1));
+        assertSame(values.get(2), values.get(3));
+    }
+
+    @Test
+    void testInvalidJson() {
+        assertThrows(JsonParseException.class, () -> decoder.decode("teamA"));
+        assertThrows(JsonParseException.class, () -> decoder.decode("{\"code\": 200"));
+        assertThrows(JsonParseException.class, () -> decoder.decode("{} {}"));
+    }
+
+}
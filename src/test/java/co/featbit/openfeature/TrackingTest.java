@@ -0,0 +1,132 @@
+package co.featbit.openfeature;
+
+import co.featbit.commons.model.FBUser;
+import dev.openfeature.sdk.Client;
+import dev.openfeature.sdk.ImmutableContext;
+import dev.openfeature.sdk.MutableTrackingEventDetails;
+import dev.openfeature.sdk.NoOpProvider;
+import dev.openfeature.sdk.OpenFeatureAPI;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackingTest extends BaseTest {
+
+    private static FBProvider provider;
+
+    private final FBUser user = new FBUser.Builder("test-user-1").userName("test-user-1").build();
+
+    @BeforeAll
+    static void init() throws IOException {
+        provider = initClientInOfflineMode();
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testTrack() throws IOException {
+        OpenFeatureAPI.getInstance().setProviderAndWait("tracking", initClientInOfflineMode());
+        Client client = OpenFeatureAPI.getInstance().getClient("tracking");
+        client.track("checkout", user1);
+        client.track("revenue", user1, new MutableTrackingEventDetails(42.5));
+        // no targeting key, dropped without an exception
+        assertDoesNotThrow(() -> client.track("checkout", new ImmutableContext()));
+        // replacing the provider shuts it down
+        OpenFeatureAPI.getInstance().setProviderAndWait("tracking", new NoOpProvider());
+    }
+
+    @Test
+    void testDrop() {
+        PausedExecutor executor = new PausedExecutor();
+        MetricTracker tracker = new MetricTracker(provider.getClient(), executor, 2, TrackingBackpressure.DROP, Duration.ZERO);
+        for (int i = 0; i < 5; i++) {
+            tracker.track(user, "checkout", null);
+        }
+        assertEquals(3, tracker.droppedCount());
+        assertEquals(2, tracker.stats().getPendingCount());
+        assertEquals(1, executor.tasks.size());
+        // the pending events are sent on close
+        assertEquals(0, tracker.close(Duration.ofSeconds(1)));
+        tracker.track(user, "checkout", 1D);
+        assertEquals(4, tracker.droppedCount());
+        assertEquals(0, tracker.stats().getPendingCount());
+        assertEquals(4, tracker.stats().getDroppedCount());
+    }
+
+    @Test
+    void testBlock() {
+        PausedExecutor executor = new PausedExecutor();
+        MetricTracker tracker = new MetricTracker(provider.getClient(), executor, 1, TrackingBackpressure.BLOCK, Duration.ofMillis(20));
+        tracker.track(user, "checkout", null);
+        long start = System.nanoTime();
+        tracker.track(user, "checkout", null);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(20).toNanos());
+        assertEquals(1, tracker.droppedCount());
+        // a drain frees the slots
+        executor.runAll();
+        tracker.track(user, "checkout", null);
+        assertEquals(1, tracker.droppedCount());
+        tracker.close(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testSample() {
+        MetricTracker tracker = new MetricTracker(provider.getClient(), new PausedExecutor(), 100, TrackingBackpressure.SAMPLE, Duration.ZERO);
+        for (int i = 0; i < 1_000; i++) {
+            tracker.track(user, "checkout", null);
+        }
+        // all the events are kept below half the capacity, fewer and fewer above
+        long queued = 1_000 - tracker.sampledOutCount() - tracker.droppedCount();
+        assertTrue(tracker.sampledOutCount() > 0);
+        assertTrue(queued >= 50 && queued <= 100, String.valueOf(queued));
+        assertEquals(tracker.sampledOutCount(), tracker.stats().getSampledOutCount());
+        tracker.close(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testStatistics() throws IOException {
+        FBProvider provider = initClientInOfflineMode();
+        provider.track("checkout", user1, null);
+        provider.shutdown();
+        // closed, the event is not queued
+        provider.track("checkout", user1, null);
+        TrackingStatistics stats = provider.getTrackingStatistics();
+        assertEquals(0, stats.getPendingCount());
+        assertEquals(1, stats.getDroppedCount());
+        assertEquals(0, stats.getSampledOutCount());
+    }
+
+    @Test
+    void testInvalidOptions() {
+        assertThrows(IllegalArgumentException.class, () -> new FBProviderOptions.Builder().trackingQueueCapacity(0));
+        assertThrows(IllegalArgumentException.class, () -> new FBProviderOptions.Builder().trackingBackpressure(null));
+        assertThrows(IllegalArgumentException.class, () -> new FBProviderOptions.Builder().trackingFlushTimeout(Duration.ofSeconds(-1)));
+    }
+
+    // runs the drain tasks on demand
+    private static final class PausedExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        private void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            pending.forEach(Runnable::run);
+        }
+    }
+}
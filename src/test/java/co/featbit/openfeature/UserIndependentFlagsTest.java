@@ -0,0 +1,188 @@
+package co.featbit.openfeature;
+
+import co.featbit.server.FBConfig;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import dev.openfeature.sdk.ImmutableContext;
+import dev.openfeature.sdk.ProviderEvaluation;
+import dev.openfeature.sdk.Value;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static co.featbit.server.EvaluationReason.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserIndependentFlagsTest extends BaseTest {
+
+    private static FlagDataSet data;
+    private static FBProvider provider;
+
+    @BeforeAll
+    static void init() throws Exception {
+        data = FlagDataSet.parse(readResource("fbclient_test_data.json"));
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        FBProviderOptions options = new FBProviderOptions.Builder()
+                .userIndependentFlags(true)
+                .insightDeduplicationWindow(Duration.ofMinutes(10))
+                .build();
+        provider = new FBProvider("env-secret", config, options);
+        provider.getClient().initializeFromExternalJson(data.withFlag(killSwitch()).toDataSyncJson());
+        provider.initialize(new ImmutableContext());
+    }
+
+    @AfterAll
+    static void dispose() {
+        provider.shutdown();
+    }
+
+    @Test
+    void testClassification() {
+        assertTrue(UserIndependentFlags.isUserIndependent(data.getFlags().get("ff-test-off")));
+        assertTrue(UserIndependentFlags.isUserIndependent(killSwitch()));
+        // target users, rules or a percentage rollout
+        assertFalse(UserIndependentFlags.isUserIndependent(data.getFlags().get("ff-test-bool")));
+        assertFalse(UserIndependentFlags.isUserIndependent(data.getFlags().get("ff-test-string")));
+        assertFalse(UserIndependentFlags.isUserIndependent(data.getFlags().get("ff-test-json")));
+    }
+
+    @Test
+    void testReclassify() {
+        UserIndependentFlags flags = new UserIndependentFlags();
+        flags.reclassifyAll(data.withFlag(killSwitch()));
+        assertNotNull(flags.get("ff-test-off"));
+        assertNotNull(flags.get("ff-kill-switch"));
+        assertNull(flags.get("ff-test-bool"));
+
+        UserIndependentFlags.Entry entry = flags.get("ff-kill-switch");
+        JsonObject targeted = killSwitch();
+        JsonObject target = new JsonObject();
+        JsonArray keyIds = new JsonArray();
+        keyIds.add("test-user-1");
+        target.add("keyIds", keyIds);
+        target.addProperty("variationId", "18b3");
+        targeted.getAsJsonArray("targetUsers").add(target);
+        flags.reclassify(data.withFlag(targeted), "ff-kill-switch");
+        assertNull(flags.get("ff-kill-switch"));
+
+        flags.reclassify(data.withFlag(killSwitch()), "ff-kill-switch");
+        assertNotSame(entry, flags.get("ff-kill-switch"));
+    }
+
+    @Test
+    void testUpdateHooks() {
+        UserIndependentFlags flags = new UserIndependentFlags();
+        flags.afterUpdate(data.withFlag(killSwitch()), null);
+        assertNotNull(flags.get("ff-kill-switch"));
+        // dropped before the storage changes
+        flags.beforeUpdate("ff-kill-switch");
+        assertNull(flags.get("ff-kill-switch"));
+        assertNotNull(flags.get("ff-test-off"));
+        flags.afterUpdate(data.withFlag(killSwitch()), "ff-kill-switch");
+        assertNotNull(flags.get("ff-kill-switch"));
+        flags.beforeUpdate(null);
+        assertNull(flags.get("ff-test-off"));
+    }
+
+    @Test
+    void testChangeIsServedAtOnce() throws Exception {
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        FBProviderOptions options = new FBProviderOptions.Builder()
+                .userIndependentFlags(true)
+                .insightDeduplicationWindow(Duration.ofMinutes(10))
+                .build();
+        FBProvider provider = new FBProvider("env-secret", config, options);
+        try {
+            provider.getClient().initializeFromExternalJson(data.withFlag(killSwitch()).toDataSyncJson());
+            provider.initialize(new ImmutableContext());
+            assertTrue(provider.getBooleanEvaluation("ff-kill-switch", false, user1).getValue());
+
+            JsonObject disabled = killSwitch();
+            disabled.addProperty("isEnabled", false);
+            disabled.addProperty("updatedAt", "2030-01-01T00:00:00Z");
+            assertTrue(provider.getClient().initializeFromExternalJson(data.withFlag(disabled).toDataSyncJson()));
+            // without waiting for the flag change events
+            ProviderEvaluation<Boolean> res = provider.getBooleanEvaluation("ff-kill-switch", true, user1);
+            assertFalse(res.getValue());
+            assertEquals(REASON_FLAG_OFF, res.getReason());
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    void testEvaluation() {
+        for (int i = 0; i < 3; i++) {
+            ProviderEvaluation<Boolean> res = provider.getBooleanEvaluation("ff-test-off", true, user1);
+            assertFalse(res.getValue());
+            assertEquals(REASON_FLAG_OFF, res.getReason());
+            res = provider.getBooleanEvaluation("ff-kill-switch", false, user2);
+            assertTrue(res.getValue());
+            assertEquals(REASON_FALLTHROUGH, res.getReason());
+        }
+        // the value is the same for any user, and the typed evaluations are kept apart
+        assertTrue(provider.getBooleanEvaluation("ff-kill-switch", false, user3).getValue());
+        assertTrue(provider.getObjectEvaluation("ff-kill-switch", new Value(false), user4).getValue().asBoolean());
+        assertEquals("true", provider.getStringEvaluation("ff-kill-switch", "error", user4).getValue());
+        // the errors are not kept
+        assertNotNull(provider.getIntegerEvaluation("ff-kill-switch", 0, user1).getErrorCode());
+        assertNotNull(provider.getIntegerEvaluation("ff-kill-switch", 1, user1).getErrorCode());
+        assertThrows(IllegalArgumentException.class, () -> provider.getBooleanEvaluation("ff-kill-switch", false, new ImmutableContext()));
+    }
+
+    @Test
+    void testOnlyFilteredInsightsAreServed() throws Exception {
+        FBConfig.Builder config = new FBConfig.Builder()
+                .offline(true)
+                .streamingURL("ws://fake-url")
+                .eventURL("http://fake-url");
+        FBProviderOptions options = new FBProviderOptions.Builder()
+                .userIndependentFlags(true)
+                .insightDeduplicationWindow(Duration.ofMinutes(10))
+                .build();
+        FBProvider provider = new FBProvider("env-secret", config, options);
+        try {
+            provider.getClient().initializeFromExternalJson(data.withFlag(killSwitch()).toDataSyncJson());
+            provider.initialize(new ImmutableContext());
+            for (int i = 0; i < 3; i++) {
+                assertTrue(provider.getBooleanEvaluation("ff-kill-switch", false, user1).getValue());
+            }
+            // a user not seen yet is evaluated on the client, which reports the insight
+            assertTrue(provider.getBooleanEvaluation("ff-kill-switch", false, user2).getValue());
+            InsightStatistics.FlagInsights insights = provider.getInsightStatistics().getFlag("ff-kill-switch");
+            assertEquals(4, insights.getEvaluationCount());
+            assertEquals(2, insights.getSentCount());
+            assertEquals(2, insights.getDeduplicatedCount());
+        } finally {
+            provider.shutdown();
+        }
+    }
+
+    // ff-test-bool, served true to everyone
+    private static JsonObject killSwitch() {
+        JsonObject flag = data.getFlags().get("ff-test-bool").deepCopy();
+        flag.addProperty("key", "ff-kill-switch");
+        flag.addProperty("name", "ff-kill-switch");
+        flag.addProperty("id", "0b5b3c1e-9f5d-4a43-a7d4-2f0d1f6c0a11");
+        flag.add("targetUsers", new JsonArray());
+        JsonObject variation = new JsonObject();
+        variation.addProperty("id", flag.getAsJsonArray("variations").get(0).getAsJsonObject().get("id").getAsString());
+        JsonArray rollout = new JsonArray();
+        rollout.add(0);
+        rollout.add(1);
+        variation.add("rollout", rollout);
+        variation.addProperty("exptRollout", 1);
+        JsonArray variations = new JsonArray();
+        variations.add(variation);
+        flag.getAsJsonObject("fallthrough").add("variations", variations);
+        return flag;
+    }
+}